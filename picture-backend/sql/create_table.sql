@@ -14,8 +14,11 @@ create table if not exists user
     createTime   datetime     default CURRENT_TIMESTAMP not null comment '创建时间',
     updateTime   datetime     default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
     isDelete     tinyint      default 0                 not null comment '是否删除',
+    followerCount  int        default 0                 not null comment '粉丝数',
+    followingCount int        default 0                 not null comment '关注数',
     UNIQUE KEY uk_userAccount (userAccount),
-    INDEX idx_userName (userName)
+    INDEX idx_userName (userName),
+    INDEX idx_followerCount (followerCount) -- 关注动态按粉丝数区分大 V（拉取）和普通作者（推送）
 ) comment '用户' collate = utf8mb4_unicode_ci;
 
 
@@ -128,7 +131,7 @@ create table if not exists picture_like
     -- 索引设计
     UNIQUE KEY uk_pictureId_userId (pictureId, userId), -- 唯一索引，用户对一张图片只能点赞一次
     INDEX idx_pictureId (pictureId),                    -- 提升按图片查询的性能
-    INDEX idx_userId (userId)                           -- 提升按用户查询的性能
+    INDEX idx_userId_createTime (userId, createTime)    -- 按用户查询点赞列表（按时间倒序，游标分页）
 ) comment '图片点赞' collate = utf8mb4_unicode_ci;
 
 -- 图片收藏表
@@ -142,7 +145,7 @@ create table if not exists picture_favorite
     -- 索引设计
     UNIQUE KEY uk_pictureId_userId (pictureId, userId), -- 唯一索引，用户对一张图片只能收藏一次
     INDEX idx_pictureId (pictureId),                    -- 提升按图片查询的性能
-    INDEX idx_userId (userId)                           -- 提升按用户查询的性能
+    INDEX idx_userId_createTime (userId, createTime)    -- 按用户查询收藏列表（按时间倒序，游标分页）
 ) comment '图片收藏' collate = utf8mb4_unicode_ci;
 
 -- 给图片表增加点赞数和收藏数字段
@@ -166,4 +169,15 @@ create table if not exists user_follow
     UNIQUE KEY uk_followerId_followeeId (followerId, followeeId), -- 唯一索引，用户不能重复关注同一人
     INDEX idx_followerId (followerId),                            -- 提升按关注者查询的性能
     INDEX idx_followeeId (followeeId)                             -- 提升按被关注者查询的性能
-) comment '用户关注' collate = utf8mb4_unicode_ci;
\ No newline at end of file
+) comment '用户关注' collate = utf8mb4_unicode_ci;
+
+-- 图片计数分片表（可选，picture.counter.stripe.enabled 开启时使用）
+-- 热门图片的点赞、收藏分散到多行累加增量，定时汇总到 picture 表后删除
+create table if not exists picture_counter_stripe
+(
+    pictureId     bigint        not null comment '图片 id',
+    stripe        int           not null comment '分片序号',
+    likeCount     int default 0 not null comment '点赞数增量',
+    favoriteCount int default 0 not null comment '收藏数增量',
+    primary key (pictureId, stripe)
+) comment '图片计数分片' collate = utf8mb4_unicode_ci;
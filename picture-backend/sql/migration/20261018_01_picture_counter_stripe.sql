@@ -0,0 +1,14 @@
+-- 已有数据库的升级脚本（新建数据库直接使用 create_table.sql），可以重复执行
+-- 回滚：drop table if exists picture_counter_stripe（先关闭 picture.counter.stripe.enabled，启动时会汇总剩余分片）
+use demo_picture;
+
+-- 图片计数分片表（可选，picture.counter.stripe.enabled 开启时使用）
+-- 热门图片的点赞、收藏分散到多行累加增量，定时汇总到 picture 表后删除
+create table if not exists picture_counter_stripe
+(
+    pictureId     bigint        not null comment '图片 id',
+    stripe        int           not null comment '分片序号',
+    likeCount     int default 0 not null comment '点赞数增量',
+    favoriteCount int default 0 not null comment '收藏数增量',
+    primary key (pictureId, stripe)
+) comment '图片计数分片' collate = utf8mb4_unicode_ci;
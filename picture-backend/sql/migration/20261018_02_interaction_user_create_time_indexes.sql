@@ -0,0 +1,49 @@
+-- 已有数据库的升级脚本（新建数据库直接使用 create_table.sql）
+-- 每条变更先检查 information_schema，可以重复执行
+-- 回滚：加回 idx_userId (userId)，再删除 idx_userId_createTime
+use demo_picture;
+
+-- 按用户查询点赞和收藏列表（按时间倒序，游标分页），联合索引代替 idx_userId
+set @sql = if((select count(*)
+               from information_schema.statistics
+               where table_schema = database()
+                 and table_name = 'picture_like'
+                 and index_name = 'idx_userId_createTime') = 0,
+              'alter table picture_like add index idx_userId_createTime (userId, createTime)',
+              'select 1');
+prepare stmt from @sql;
+execute stmt;
+deallocate prepare stmt;
+
+set @sql = if((select count(*)
+               from information_schema.statistics
+               where table_schema = database()
+                 and table_name = 'picture_like'
+                 and index_name = 'idx_userId') > 0,
+              'alter table picture_like drop index idx_userId',
+              'select 1');
+prepare stmt from @sql;
+execute stmt;
+deallocate prepare stmt;
+
+set @sql = if((select count(*)
+               from information_schema.statistics
+               where table_schema = database()
+                 and table_name = 'picture_favorite'
+                 and index_name = 'idx_userId_createTime') = 0,
+              'alter table picture_favorite add index idx_userId_createTime (userId, createTime)',
+              'select 1');
+prepare stmt from @sql;
+execute stmt;
+deallocate prepare stmt;
+
+set @sql = if((select count(*)
+               from information_schema.statistics
+               where table_schema = database()
+                 and table_name = 'picture_favorite'
+                 and index_name = 'idx_userId') > 0,
+              'alter table picture_favorite drop index idx_userId',
+              'select 1');
+prepare stmt from @sql;
+execute stmt;
+deallocate prepare stmt;
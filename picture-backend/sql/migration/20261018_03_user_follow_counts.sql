@@ -0,0 +1,33 @@
+-- 已有数据库的升级脚本（新建数据库直接使用 create_table.sql）
+-- 每条变更先检查 information_schema，可以重复执行
+-- 回滚：alter table user drop column followerCount, drop column followingCount
+use demo_picture;
+
+-- 给用户表增加粉丝数和关注数字段（关注、取消关注时在同一事务中更新，定时任务按 user_follow 校正）
+set @sql = if((select count(*)
+               from information_schema.columns
+               where table_schema = database()
+                 and table_name = 'user'
+                 and column_name = 'followerCount') = 0,
+              'alter table user add column followerCount int default 0 not null comment ''粉丝数''',
+              'select 1');
+prepare stmt from @sql;
+execute stmt;
+deallocate prepare stmt;
+
+set @sql = if((select count(*)
+               from information_schema.columns
+               where table_schema = database()
+                 and table_name = 'user'
+                 and column_name = 'followingCount') = 0,
+              'alter table user add column followingCount int default 0 not null comment ''关注数''',
+              'select 1');
+prepare stmt from @sql;
+execute stmt;
+deallocate prepare stmt;
+
+-- 按已有的关注记录初始化计数（可以重复执行，之后由定时任务校正）
+update user u
+set u.followerCount  = (select count(*) from user_follow f where f.followeeId = u.id),
+    u.followingCount = (select count(*) from user_follow f where f.followerId = u.id),
+    u.updateTime     = u.updateTime;
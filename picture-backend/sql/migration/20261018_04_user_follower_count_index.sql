@@ -0,0 +1,16 @@
+-- 已有数据库的升级脚本（新建数据库直接使用 create_table.sql）
+-- 每条变更先检查 information_schema，可以重复执行
+-- 回滚：drop index idx_followerCount on user
+use demo_picture;
+
+-- 关注动态按粉丝数区分大 V（拉取）和普通作者（推送到粉丝收件箱）
+set @sql = if((select count(*)
+               from information_schema.statistics
+               where table_schema = database()
+                 and table_name = 'user'
+                 and index_name = 'idx_followerCount') = 0,
+              'create index idx_followerCount on user (followerCount)',
+              'select 1');
+prepare stmt from @sql;
+execute stmt;
+deallocate prepare stmt;
@@ -5,12 +5,14 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 @SpringBootApplication
 @MapperScan("com.ouguofeng.mapper")
 @EnableAspectJAutoProxy(exposeProxy = true)
 @EnableAsync
+@EnableScheduling
 public class PictureBackendApplication {
 
     public static void main(String[] args) {
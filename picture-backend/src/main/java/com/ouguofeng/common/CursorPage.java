@@ -0,0 +1,66 @@
+package com.ouguofeng.common;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 支持游标的分页结果
+ * 游标分页不统计总数（total 为 0），客户端根据 hasMore 判断是否还有下一页，并用 nextCursor 请求下一页；
+ * 游标由排序字段（时间和记录 id）组成，上一页的最后一条记录被删除后仍然有效
+ */
+@Getter
+@Setter
+public class CursorPage<T> extends Page<T> {
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 下一页的游标，没有下一页时为 null
+     */
+    private String nextCursor;
+
+    public CursorPage(long current, long size, long total) {
+        super(current, size, total);
+    }
+
+    public CursorPage(long current, long size, boolean searchCount) {
+        super(current, size, searchCount);
+    }
+
+    public CursorPage(long current, long size, long total, List<T> records, boolean hasMore, String nextCursor) {
+        super(current, size, total);
+        setRecords(records);
+        this.hasMore = hasMore;
+        this.nextCursor = hasMore ? nextCursor : null;
+    }
+
+    /**
+     * 由记录的创建时间和 id 生成游标
+     */
+    public static String toCursor(Date createTime, Long id) {
+        return createTime.getTime() + "_" + id;
+    }
+
+    /**
+     * 解析游标，返回 [创建时间毫秒数, 记录 id]，格式错误时返回 null
+     */
+    public static long[] parseCursor(String cursor) {
+        List<String> parts = StrUtil.split(cursor, '_');
+        if (parts.size() != 2) {
+            return null;
+        }
+        try {
+            return new long[]{Long.parseLong(parts.get(0)), Long.parseLong(parts.get(1))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ouguofeng.config;
+
+import com.ouguofeng.manager.cache.CacheInvalidationBroadcaster;
+import com.ouguofeng.manager.cache.CacheLoadNotifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 缓存相关的 Redis 配置
+ */
+@Configuration
+public class RedisCacheConfig {
+
+    /**
+     * 缓存值读写模板，键为字符串，值为编码后的字节数组
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> cacheRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        RedisTemplate<String, byte[]> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(redisConnectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        return redisTemplate;
+    }
+
+    /**
+     * 订阅本地缓存失效广播和缓存加载完成通知
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       CacheInvalidationBroadcaster cacheInvalidationBroadcaster,
+                                                                       CacheLoadNotifier cacheLoadNotifier) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(cacheInvalidationBroadcaster,
+                new ChannelTopic(CacheInvalidationBroadcaster.CHANNEL));
+        container.addMessageListener(cacheLoadNotifier, new ChannelTopic(CacheLoadNotifier.CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,35 @@
+package com.ouguofeng.controller;
+
+import com.ouguofeng.annotation.AuthCheck;
+import com.ouguofeng.common.BaseResponse;
+import com.ouguofeng.common.ResultUtils;
+import com.ouguofeng.constant.UserConstant;
+import com.ouguofeng.model.vo.CacheStatsVO;
+import com.ouguofeng.service.CacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * 缓存管理接口
+ */
+@Slf4j
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+
+    @Resource
+    private CacheService cacheService;
+
+    /**
+     * 获取缓存统计（仅管理员可用）
+     */
+    @GetMapping("/stats")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<CacheStatsVO> getCacheStats() {
+        return ResultUtils.success(cacheService.getCacheStats());
+    }
+}
@@ -1,12 +1,12 @@
 package com.ouguofeng.controller;
 
-import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.alibaba.dashscope.exception.ApiException;
 import com.alibaba.dashscope.exception.NoApiKeyException;
 import com.alibaba.dashscope.exception.UploadFileException;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.ouguofeng.annotation.AuthCheck;
 import com.ouguofeng.api.aliyunai.AliYunAiApi;
 import com.ouguofeng.api.aliyunai.model.CreateOutPaintingTaskResponse;
@@ -22,6 +22,11 @@ import com.ouguofeng.constant.UserConstant;
 import com.ouguofeng.exception.BusinessException;
 import com.ouguofeng.exception.ErrorCode;
 import com.ouguofeng.exception.ThrowUtils;
+import com.ouguofeng.manager.cache.CacheMetrics;
+import com.ouguofeng.manager.cache.CacheNamespaces;
+import com.ouguofeng.manager.cache.PictureCacheTags;
+import com.ouguofeng.manager.cache.PictureIdBloomFilter;
+import com.ouguofeng.manager.hot.HotPictureManager;
 import com.ouguofeng.model.dto.picture.*;
 import com.ouguofeng.model.entity.Picture;
 import com.ouguofeng.model.entity.Space;
@@ -32,18 +37,16 @@ import com.ouguofeng.model.vo.PictureVO;
 import com.ouguofeng.service.*;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RestController
@@ -56,9 +59,6 @@ public class PictureController {
     @Resource
     private PictureService pictureService;
 
-    @Resource
-    private StringRedisTemplate stringRedisTemplate;
-
     @Resource
     private AliYunAiApi aliYunAiApi;
 
@@ -68,14 +68,20 @@ public class PictureController {
     @Resource
     private CacheService cacheService;
 
+    @Resource
+    private PictureIdBloomFilter pictureIdBloomFilter;
+
+    @Resource
+    private HotPictureManager hotPictureManager;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
     /**
-     * 清除图片列表缓存
-     * 在图片增删改操作后调用，确保缓存数据的一致性
-     * 使用统一的缓存服务
+     * 图片列表缓存值类型
      */
-    private void clearPictureCache() {
-        cacheService.clearPictureCache();
-    }
+    private static final TypeReference<Page<PictureVO>> PICTURE_VO_PAGE_TYPE = new TypeReference<>() {
+    };
 
     /**
      * 清除单个图片缓存
@@ -96,8 +102,7 @@ public class PictureController {
         // 获取登录用户
         User loginUser = userService.getLoginUser(request);
         PictureVO pictureVO = pictureService.uploadPicture(multipartFile, pictureUploadRequest, loginUser);
-        // 清除缓存
-        clearPictureCache();
+        // 清除缓存（列表缓存由 service 按标签清除）
         if (pictureVO != null && pictureVO.getId() != null) {
             clearPictureCache(pictureVO.getId());
         }
@@ -115,8 +120,6 @@ public class PictureController {
         ThrowUtils.throwIf(pictureUploadByBatchRequest == null, ErrorCode.PARAMS_ERROR);
         User loginUser = userService.getLoginUser(request);
         int uploadCount = pictureService.uploadPictureByBatch(pictureUploadByBatchRequest, loginUser);
-        // 清除缓存
-        clearPictureCache();
         return ResultUtils.success(uploadCount);
     }
 
@@ -131,8 +134,7 @@ public class PictureController {
         User loginUser = userService.getLoginUser(request);
         String fileUrl = pictureUploadRequest.getFileUrl();
         PictureVO pictureVO = pictureService.uploadPicture(fileUrl, pictureUploadRequest, loginUser);
-        // 清除缓存
-        clearPictureCache();
+        // 清除缓存（列表缓存由 service 按标签清除）
         if (pictureVO != null && pictureVO.getId() != null) {
             clearPictureCache(pictureVO.getId());
         }
@@ -151,8 +153,7 @@ public class PictureController {
         Long pictureId = deleteRequest.getId();
 
         pictureService.deletePicture(pictureId, loginUser);
-        // 清除缓存
-        clearPictureCache();
+        // 清除缓存（列表缓存由 service 按标签清除）
         clearPictureCache(pictureId);
 
         return ResultUtils.success(true);
@@ -187,8 +188,9 @@ public class PictureController {
         // 操作数据库
         boolean result = pictureService.updateById(picture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
-        // 清除缓存
-        clearPictureCache();
+        // 清除缓存：只清除受这次修改影响的列表缓存
+        cacheService.invalidateTags(PictureCacheTags.ofWrite(oldPicture,
+                PictureCacheTags.afterUpdate(oldPicture, picture)));
         clearPictureCache(id);
         return ResultUtils.success(true);
     }
@@ -204,8 +206,7 @@ public class PictureController {
         }
         User loginUser = userService.getLoginUser(request);
         pictureService.editPicture(pictureEditRequest, loginUser);
-        // 清除缓存
-        clearPictureCache();
+        // 清除缓存（列表缓存由 service 按标签清除）
         clearPictureCache(pictureEditRequest.getId());
         return ResultUtils.success(true);
     }
@@ -270,7 +271,7 @@ public class PictureController {
         ThrowUtils.throwIf(size > 100, ErrorCode.PARAMS_ERROR);
         Long spaceId = pictureQueryRequest.getSpaceId();
 
-        // 私有空间不使用缓存，直接查询（因为涉及权限校验）
+        // 私有空间先校验权限，再按空间版本号缓存
         if (spaceId != null) {
             User loginUser = userService.getLoginUser(request);
             Space space = spaceService.getById(spaceId);
@@ -278,97 +279,65 @@ public class PictureController {
             if (!loginUser.getId().equals(space.getUserId())) {
                 throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
             }
-            // 私有空间直接查询数据库，不使用缓存
-            Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                    pictureService.getQueryWrapper(pictureQueryRequest));
-            return ResultUtils.success(pictureService.getPictureVOPage(picturePage, request));
-        }
-
-        // 公共图库使用缓存
-        // 普通用户默认只能看到审核通过的数据
-        pictureQueryRequest.setReviewStatus(PictureReviewStatusEnum.PASS.getValue());
-        pictureQueryRequest.setNullSpaceId(true);
-
-        // 查询缓存，缓存中没有，再查询数据库
-        // 构建缓存的 key
-        String queryCondition = JSONUtil.toJsonStr(pictureQueryRequest);
-        String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes());
-        String cacheKey = String.format("listPictureVOByPage:%s", hashKey);
-        // 1. 先从本地缓存中查询
-        String cachedValue = cacheService.getLocalCache(cacheKey);
-        if (cachedValue != null) {
-            // 如果缓存命中，返回结果
-            @SuppressWarnings("unchecked")
-            Page<PictureVO> cachedPage = JSONUtil.toBean(cachedValue, Page.class);
-            return ResultUtils.success(cachedPage);
-        }
-        // 2. 本地缓存未命中，查询 Redis 分布式缓存
-        ValueOperations<String, String> opsForValue = stringRedisTemplate.opsForValue();
-        cachedValue = opsForValue.get(cacheKey);
-        if (cachedValue != null) {
-            // 如果缓存命中，更新本地缓存，返回结果
-            cacheService.putLocalCache(cacheKey, cachedValue);
-            @SuppressWarnings("unchecked")
-            Page<PictureVO> cachedPage = JSONUtil.toBean(cachedValue, Page.class);
-            return ResultUtils.success(cachedPage);
-        }
-        // 3. 查询数据库（使用分布式锁防止缓存击穿）
-        String lockKey = "query:" + cacheKey;
-        boolean locked = false;
-        try {
-            // 尝试获取锁，超时时间5秒
-            locked = cacheService.tryLock(lockKey, 5);
-            if (locked) {
-                // 获取到锁，再次检查缓存（双重检查，防止其他线程已经写入缓存）
-                cachedValue = opsForValue.get(cacheKey);
-                if (cachedValue != null) {
-                    cacheService.putLocalCache(cacheKey, cachedValue);
-                    @SuppressWarnings("unchecked")
-                    Page<PictureVO> cachedPage = JSONUtil.toBean(cachedValue, Page.class);
-                    return ResultUtils.success(cachedPage);
-                }
-
-                // 查询数据库
+            // 空间内图片有任何新增、删除、编辑都会更新空间版本号，旧版本的缓存不再被读取
+            String queryCondition = JSONUtil.toJsonStr(pictureQueryRequest);
+            String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes());
+            String cacheKey = cacheService.versionedKey(CacheNamespaces.space(spaceId),
+                    String.format("listSpacePictureVOByPage:%s", hashKey));
+            Page<PictureVO> pictureVOPage = cacheService.getOrLoad(cacheKey, PICTURE_VO_PAGE_TYPE, 300, () -> {
                 Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
                         pictureService.getQueryWrapper(pictureQueryRequest));
-                Page<PictureVO> pictureVOPage = pictureService.getPictureVOPage(picturePage, request);
-
-                // 4. 更新缓存
-                String cacheValue = JSONUtil.toJsonStr(pictureVOPage);
-                // 设置缓存的过期时间，5 - 10 分钟过期，防止缓存雪崩
-                int cacheExpireTime = 300 + RandomUtil.randomInt(0, 300);
-                opsForValue.set(cacheKey, cacheValue, cacheExpireTime, TimeUnit.SECONDS);
-                // 写入本地缓存
-                cacheService.putLocalCache(cacheKey, cacheValue);
-                return ResultUtils.success(pictureVOPage);
-            } else {
-                // 未获取到锁，说明其他线程正在查询数据库，等待一小段时间后重试从缓存获取
-                Thread.sleep(50); // 等待50ms
-                cachedValue = opsForValue.get(cacheKey);
-                if (cachedValue != null) {
-                    cacheService.putLocalCache(cacheKey, cachedValue);
-                    @SuppressWarnings("unchecked")
-                    Page<PictureVO> cachedPage = JSONUtil.toBean(cachedValue, Page.class);
-                    return ResultUtils.success(cachedPage);
-                }
-                // 如果还是没有，直接查询数据库（降级策略）
-                Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                        pictureService.getQueryWrapper(pictureQueryRequest));
-                Page<PictureVO> pictureVOPage = pictureService.getPictureVOPage(picturePage, request);
-                return ResultUtils.success(pictureVOPage);
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            // 中断异常，直接查询数据库
-            Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                    pictureService.getQueryWrapper(pictureQueryRequest));
-            Page<PictureVO> pictureVOPage = pictureService.getPictureVOPage(picturePage, request);
-            return ResultUtils.success(pictureVOPage);
-        } finally {
-            if (locked) {
-                cacheService.releaseLock(lockKey);
-            }
+                return pictureService.getPictureVOPage(picturePage, null);
+            }, null);
+            return ResultUtils.success(fillPictureInteraction(pictureVOPage, request));
         }
+
+        // 公共图库使用缓存，缓存中不含当前用户的点赞和收藏状态，读取后再填充
+        Page<PictureVO> pictureVOPage = pictureService.listPublicPictureVOByPageWithCache(pictureQueryRequest);
+        return ResultUtils.success(fillPictureInteraction(pictureVOPage, request));
+    }
+
+    /**
+     * 分页获取公共图库热门图片（封装类）
+     */
+    @PostMapping("/list/hot")
+    public BaseResponse<Page<PictureVO>> listHotPictureVOByPage(@RequestBody PictureQueryRequest pictureQueryRequest,
+                                                              HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        long current = pictureQueryRequest.getCurrent();
+        long size = pictureQueryRequest.getPageSize();
+        // 限制爬虫
+        ThrowUtils.throwIf(current <= 0 || size <= 0 || size > 100, ErrorCode.PARAMS_ERROR);
+        Page<PictureVO> pictureVOPage = pictureService.listHotPictureVOByPage(current, size);
+        return ResultUtils.success(fillPictureInteraction(pictureVOPage, request));
+    }
+
+    /**
+     * 获取关注动态（当前登录用户关注的作者最新的公开图片，游标分页）
+     */
+    @PostMapping("/list/feed")
+    public BaseResponse<Page<PictureVO>> listFeedPictureVOByPage(@RequestBody PictureFeedQueryRequest pictureFeedQueryRequest,
+                                                               HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureFeedQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        int size = pictureFeedQueryRequest.getPageSize();
+        // 限制爬虫
+        ThrowUtils.throwIf(size <= 0 || size > 50, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        List<PictureVO> pictureVOList = pictureService.listFeedPictureVO(loginUser.getId(),
+                pictureFeedQueryRequest.getLastPictureId(), size);
+        Page<PictureVO> pictureVOPage = new Page<>(1, size, false);
+        pictureVOPage.setRecords(pictureService.fillPictureInteraction(pictureVOList, request));
+        return ResultUtils.success(pictureVOPage);
+    }
+
+    /**
+     * 填充当前登录用户对缓存分页中图片的点赞和收藏状态
+     */
+    private Page<PictureVO> fillPictureInteraction(Page<PictureVO> pictureVOPage, HttpServletRequest request) {
+        Page<PictureVO> resultPage = new Page<>(pictureVOPage.getCurrent(), pictureVOPage.getSize(),
+                pictureVOPage.getTotal());
+        resultPage.setRecords(pictureService.fillPictureInteraction(pictureVOPage.getRecords(), request));
+        return resultPage;
     }
 
     /**
@@ -391,15 +360,15 @@ public class PictureController {
     @GetMapping("/get/vo")
     public BaseResponse<PictureVO> getPictureVOById(long id, HttpServletRequest request) {
         ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
+        // 布隆过滤器判断一定不存在的 id 直接返回，不访问 Redis 和数据库
+        ThrowUtils.throwIf(!pictureIdBloomFilter.mightContain(id), ErrorCode.NOT_FOUND_ERROR);
 
         // 构建缓存键
         String cacheKey = String.format("picture:vo:%d", id);
 
         // 1. 先从缓存中查询
-        String cachedValue = cacheService.get(cacheKey);
-        if (cachedValue != null) {
-            @SuppressWarnings("unchecked")
-            PictureVO cachedVO = JSONUtil.toBean(cachedValue, PictureVO.class);
+        PictureVO cachedVO = cacheService.get(cacheKey, PictureVO.class);
+        if (cachedVO != null) {
             // 空间权限校验（即使有缓存也需要校验）
             Long spaceId = cachedVO.getSpaceId();
             if (spaceId != null) {
@@ -408,27 +377,78 @@ public class PictureController {
                 if (picture != null) {
                     pictureService.checkPictureAuth(loginUser, picture);
                 }
+            } else {
+                // 公共图库的浏览计入热度
+                hotPictureManager.recordView(id, viewerOf(request));
             }
-            return ResultUtils.success(cachedVO);
+            return ResultUtils.success(fillPictureInteraction(cachedVO, request));
         }
 
-        // 2. 缓存未命中，查询数据库
-        Picture picture = pictureService.getById(id);
-        ThrowUtils.throwIf(picture == null, ErrorCode.NOT_FOUND_ERROR);
+        // 2. 最近查询过并且不存在的 id，直接返回
+        String missingCacheKey = String.format("picture:missing:%d", id);
+        ThrowUtils.throwIf(cacheService.get(missingCacheKey, Boolean.class) != null, ErrorCode.NOT_FOUND_ERROR);
+
+        // 3. 缓存未命中，查询数据库（计入缓存指标的回源次数和耗时）
+        long loadStart = System.nanoTime();
+        Picture picture;
+        try {
+            picture = pictureService.getById(id);
+        } catch (RuntimeException e) {
+            cacheMetrics.recordLoad(cacheKey, System.nanoTime() - loadStart, false);
+            throw e;
+        }
+        if (picture == null) {
+            cacheMetrics.recordLoad(cacheKey, System.nanoTime() - loadStart, true);
+            // 短时间缓存不存在的结果，防止反复查询数据库
+            cacheService.set(missingCacheKey, Boolean.TRUE, 60);
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR);
+        }
         // 空间权限校验
         Long spaceId = picture.getSpaceId();
         if (spaceId != null) {
             User loginUser = userService.getLoginUser(request);
             pictureService.checkPictureAuth(loginUser, picture);
+        } else {
+            hotPictureManager.recordView(id, viewerOf(request));
         }
-        // 获取封装类
-        PictureVO pictureVO = pictureService.getPictureVO(picture, request);
+        // 获取封装类（缓存所有用户共享，不包含当前用户的点赞和收藏状态）
+        PictureVO pictureVO;
+        try {
+            pictureVO = pictureService.getPictureVO(picture, null);
+        } catch (RuntimeException e) {
+            cacheMetrics.recordLoad(cacheKey, System.nanoTime() - loadStart, false);
+            throw e;
+        }
+        cacheMetrics.recordLoad(cacheKey, System.nanoTime() - loadStart, true);
 
-        // 3. 写入缓存（5分钟过期）
-        String cacheValue = JSONUtil.toJsonStr(pictureVO);
-        cacheService.set(cacheKey, cacheValue, 300);
+        // 4. 写入缓存（5分钟过期）
+        cacheService.set(cacheKey, pictureVO, 300);
 
-        return ResultUtils.success(pictureVO);
+        return ResultUtils.success(fillPictureInteraction(pictureVO, request));
+    }
+
+    /**
+     * 填充当前登录用户对单张图片的点赞和收藏状态
+     */
+    private PictureVO fillPictureInteraction(PictureVO pictureVO, HttpServletRequest request) {
+        return pictureService.fillPictureInteraction(Collections.singletonList(pictureVO), request).get(0);
+    }
+
+    /**
+     * 浏览去重使用的访问者标识：登录用户用 id（只读会话，不查询数据库），未登录用户用 IP
+     */
+    private String viewerOf(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        Object user = session == null ? null : session.getAttribute(UserConstant.USER_LOGIN_STATE);
+        if (user instanceof User && ((User) user).getId() != null) {
+            return "u" + ((User) user).getId();
+        }
+        // 经过反向代理时取最初的客户端地址
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (StrUtil.isNotBlank(forwardedFor)) {
+            return StrUtil.subBefore(forwardedFor, ",", false).trim();
+        }
+        return request.getRemoteAddr();
     }
 
     /**
@@ -441,68 +461,19 @@ public class PictureController {
         ThrowUtils.throwIf(pictureReviewRequest == null, ErrorCode.PARAMS_ERROR);
         User loginUser = userService.getLoginUser(request);
         pictureService.doPictureReview(pictureReviewRequest, loginUser);
-        // 清除缓存（审核状态改变会影响公共图库显示）
-        clearPictureCache();
+        // 清除缓存（审核状态改变会影响公共图库显示，列表缓存由 service 按标签清除）
         if (pictureReviewRequest.getId() != null) {
             clearPictureCache(pictureReviewRequest.getId());
         }
         return ResultUtils.success(true);
     }
 
-    /**
-     * 预定义的图片标签列表（精简版）
-     * 用于前端展示和AI识别时的参考
-     */
-    public static final List<String> PICTURE_TAGS = Arrays.asList(
-            // 风格类
-            "高清", "创意", "艺术", "简约", "卡通",
-            // 场景类
-            "风景", "自然", "城市", "建筑", "夜景",
-            // 人物类
-            "人物", "美女", "儿童", "情侣",
-            // 生活类
-            "生活", "美食", "旅游", "运动", "宠物",
-            // 情感类
-            "搞笑", "温馨", "浪漫", "治愈",
-            // 主题类
-            "科技", "动物", "植物", "节日",
-            // 用途类
-            "壁纸", "海报", "头像", "背景");
-
-    /**
-     * 预定义的图片分类列表
-     * 用于前端展示和AI识别时的选择
-     */
-    public static final List<String> PICTURE_CATEGORIES = Arrays.asList(
-            "模板", "电商", "表情包", "素材", "海报", "壁纸",
-            "图标", "插画", "背景图");
-
     /**
      * 获取图片标签和分类
      */
     @GetMapping("/tag_category")
     public BaseResponse<PictureTagCategory> listPictureTagCategory() {
-        // 构建缓存键（静态数据，使用固定键）
-        String cacheKey = "picture:tag_category";
-
-        // 1. 先从缓存中查询
-        String cachedValue = cacheService.get(cacheKey);
-        if (cachedValue != null) {
-            @SuppressWarnings("unchecked")
-            PictureTagCategory cachedCategory = JSONUtil.toBean(cachedValue, PictureTagCategory.class);
-            return ResultUtils.success(cachedCategory);
-        }
-
-        // 2. 缓存未命中，构建数据
-        PictureTagCategory pictureTagCategory = new PictureTagCategory();
-        pictureTagCategory.setTagList(PICTURE_TAGS);
-        pictureTagCategory.setCategoryList(PICTURE_CATEGORIES);
-
-        // 3. 写入缓存（24小时过期，静态数据）
-        String cacheValue = JSONUtil.toJsonStr(pictureTagCategory);
-        cacheService.set(cacheKey, cacheValue, 86400);
-
-        return ResultUtils.success(pictureTagCategory);
+        return ResultUtils.success(pictureService.getPictureTagCategory());
     }
 
     /**
@@ -545,8 +516,7 @@ public class PictureController {
         ThrowUtils.throwIf(pictureEditByBatchRequest == null, ErrorCode.PARAMS_ERROR);
         User loginUser = userService.getLoginUser(request);
         pictureService.editPictureByBatch(pictureEditByBatchRequest, loginUser);
-        // 清除缓存
-        clearPictureCache();
+        // 批量编辑只作用于私有空间，不影响公共图库列表缓存
         // 清除批量编辑的图片缓存
         if (pictureEditByBatchRequest.getPictureIdList() != null) {
             for (Long pictureId : pictureEditByBatchRequest.getPictureIdList()) {
@@ -5,9 +5,11 @@ import com.ouguofeng.common.BaseResponse;
 import com.ouguofeng.common.ResultUtils;
 import com.ouguofeng.exception.BusinessException;
 import com.ouguofeng.exception.ErrorCode;
+import com.ouguofeng.model.dto.picture.PictureInteractionBatchRequest;
 import com.ouguofeng.model.dto.picture.PictureInteractionQueryRequest;
 import com.ouguofeng.model.dto.picture.PictureInteractionRequest;
 import com.ouguofeng.model.entity.User;
+import com.ouguofeng.model.vo.PictureInteractionResultVO;
 import com.ouguofeng.model.vo.PictureVO;
 import com.ouguofeng.service.PictureFavoriteService;
 import com.ouguofeng.service.UserService;
@@ -16,6 +18,7 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import java.util.List;
 
 /**
  * 图片收藏接口
@@ -61,6 +64,36 @@ public class PictureFavoriteController {
         return ResultUtils.success(result);
     }
 
+    /**
+     * 批量收藏
+     */
+    @PostMapping("/do/batch")
+    public BaseResponse<List<PictureInteractionResultVO>> favoritePictureByBatch(@RequestBody PictureInteractionBatchRequest pictureInteractionBatchRequest,
+                                                                        HttpServletRequest request) {
+        if (pictureInteractionBatchRequest == null || pictureInteractionBatchRequest.getPictureIdList() == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        User loginUser = userService.getLoginUser(request);
+        List<PictureInteractionResultVO> result = pictureFavoriteService.favoritePictureByBatch(
+                pictureInteractionBatchRequest.getPictureIdList(), loginUser);
+        return ResultUtils.success(result);
+    }
+
+    /**
+     * 批量取消收藏
+     */
+    @PostMapping("/cancel/batch")
+    public BaseResponse<List<PictureInteractionResultVO>> unfavoritePictureByBatch(@RequestBody PictureInteractionBatchRequest pictureInteractionBatchRequest,
+                                                                          HttpServletRequest request) {
+        if (pictureInteractionBatchRequest == null || pictureInteractionBatchRequest.getPictureIdList() == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        User loginUser = userService.getLoginUser(request);
+        List<PictureInteractionResultVO> result = pictureFavoriteService.unfavoritePictureByBatch(
+                pictureInteractionBatchRequest.getPictureIdList(), loginUser);
+        return ResultUtils.success(result);
+    }
+
     /**
      * 获取用户收藏的图片列表
      */
@@ -0,0 +1,193 @@
+package com.ouguofeng.manager.cache;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 本地缓存失效广播
+ * 通过 Redis 发布订阅通知其他节点清除本地缓存（Caffeine），
+ * 失效的键先在内存中去重攒批，定时合并成一条消息发送
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBroadcaster implements MessageListener {
+
+    /**
+     * 广播频道
+     */
+    public static final String CHANNEL = "cache:invalidate";
+
+    /**
+     * 攒批间隔（毫秒）
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = 50;
+
+    /**
+     * 单条消息最多携带的键数量
+     */
+    private static final int MAX_KEYS_PER_MESSAGE = 500;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 当前节点 id
+     */
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    /**
+     * 待广播的键（Set 自动去重）
+     */
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 是否待广播清空全部
+     */
+    private final AtomicBoolean pendingAll = new AtomicBoolean(false);
+
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("cache-invalidate-").setDaemon(true).build());
+
+    /**
+     * 收到其他节点的失效消息时的处理器，由本地缓存的持有者注册
+     */
+    private volatile LocalCacheEvictor localCacheEvictor;
+
+    /**
+     * 本地缓存清除接口
+     */
+    public interface LocalCacheEvictor {
+
+        /**
+         * 清除指定的本地缓存
+         */
+        void evict(Collection<String> keys);
+
+        /**
+         * 清除全部本地缓存
+         */
+        void evictAll();
+    }
+
+    @PostConstruct
+    public void init() {
+        flushExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void setLocalCacheEvictor(LocalCacheEvictor localCacheEvictor) {
+        this.localCacheEvictor = localCacheEvictor;
+    }
+
+    /**
+     * 通知其他节点清除指定的本地缓存
+     */
+    public void publish(Collection<String> keys) {
+        if (CollUtil.isNotEmpty(keys)) {
+            pendingKeys.addAll(keys);
+        }
+    }
+
+    /**
+     * 通知其他节点清除全部本地缓存
+     */
+    public void publishAll() {
+        pendingAll.set(true);
+    }
+
+    /**
+     * 发送攒下的失效消息
+     */
+    private void flush() {
+        try {
+            if (pendingAll.getAndSet(false)) {
+                // 清空全部时不需要再单独发送键
+                pendingKeys.clear();
+                CacheInvalidationMessage message = new CacheInvalidationMessage();
+                message.setNodeId(nodeId);
+                message.setAll(true);
+                stringRedisTemplate.convertAndSend(CHANNEL, JSONUtil.toJsonStr(message));
+                return;
+            }
+            if (pendingKeys.isEmpty()) {
+                return;
+            }
+            List<String> batch = new ArrayList<>(Math.min(pendingKeys.size(), MAX_KEYS_PER_MESSAGE));
+            for (String key : pendingKeys) {
+                // 先移除再发送，发送期间新加入的键留到下一批
+                if (pendingKeys.remove(key)) {
+                    batch.add(key);
+                }
+                if (batch.size() >= MAX_KEYS_PER_MESSAGE) {
+                    send(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                send(batch);
+            }
+        } catch (Exception e) {
+            log.error("广播本地缓存失效消息失败", e);
+        }
+    }
+
+    private void send(List<String> keys) {
+        CacheInvalidationMessage message = new CacheInvalidationMessage();
+        message.setNodeId(nodeId);
+        message.setKeys(keys);
+        stringRedisTemplate.convertAndSend(CHANNEL, JSONUtil.toJsonStr(message));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        LocalCacheEvictor evictor = localCacheEvictor;
+        if (evictor == null) {
+            return;
+        }
+        try {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            CacheInvalidationMessage invalidationMessage = JSONUtil.toBean(body, CacheInvalidationMessage.class);
+            if (nodeId.equals(invalidationMessage.getNodeId())) {
+                // 自己发出的消息，本地缓存已经清除过
+                return;
+            }
+            if (invalidationMessage.isAll()) {
+                evictor.evictAll();
+            } else if (CollUtil.isNotEmpty(invalidationMessage.getKeys())) {
+                evictor.evict(invalidationMessage.getKeys());
+            }
+        } catch (Exception e) {
+            log.error("处理本地缓存失效消息失败", e);
+        }
+    }
+
+    /**
+     * 应用关闭时发送剩余消息并关闭线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        flush();
+    }
+}
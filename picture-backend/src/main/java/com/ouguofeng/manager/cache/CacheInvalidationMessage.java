@@ -0,0 +1,30 @@
+package com.ouguofeng.manager.cache;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 本地缓存失效广播消息
+ */
+@Data
+public class CacheInvalidationMessage implements Serializable {
+
+    /**
+     * 发送消息的节点 id，节点收到自己发出的消息时忽略
+     */
+    private String nodeId;
+
+    /**
+     * 需要失效的缓存键
+     */
+    private List<String> keys;
+
+    /**
+     * 是否清空全部本地缓存
+     */
+    private boolean all;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,90 @@
+package com.ouguofeng.manager.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 缓存加载完成通知
+ * 没有抢到重建锁的节点在这里等待，持有锁的节点写完缓存后通过 Redis 发布订阅通知所有节点
+ */
+@Slf4j
+@Component
+public class CacheLoadNotifier implements MessageListener {
+
+    /**
+     * 通知频道
+     */
+    public static final String CHANNEL = "cache:loaded";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 正在等待加载完成的键
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * 登记等待，需要在尝试获取锁之前调用，避免错过通知
+     */
+    public CompletableFuture<Void> register(String key) {
+        return waiters.computeIfAbsent(key, k -> new CompletableFuture<>());
+    }
+
+    /**
+     * 取消等待
+     */
+    public void unregister(String key, CompletableFuture<Void> waiter) {
+        waiters.remove(key, waiter);
+    }
+
+    /**
+     * 等待加载完成通知
+     *
+     * @return 是否在超时前收到通知
+     */
+    public boolean await(String key, CompletableFuture<Void> waiter, long timeoutMillis) {
+        try {
+            waiter.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        } finally {
+            waiters.remove(key, waiter);
+        }
+    }
+
+    /**
+     * 通知所有节点该键已经加载完成（包括加载失败，等待方收到后自行重试）
+     */
+    public void notifyLoaded(String key) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, key);
+        } catch (Exception e) {
+            log.error("发送缓存加载完成通知失败，key: {}", key, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        CompletableFuture<Void> waiter = waiters.remove(key);
+        if (waiter != null) {
+            waiter.complete(null);
+        }
+    }
+}
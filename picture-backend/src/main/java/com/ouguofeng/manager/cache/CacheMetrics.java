@@ -0,0 +1,233 @@
+package com.ouguofeng.manager.cache;
+
+import com.ouguofeng.model.vo.CacheNamespaceStatsVO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存指标
+ * 按命名空间和层级（本地、Redis、回源）统计命中、耗时、淘汰、值大小和压缩率，
+ * 计数使用 LongAdder，记录时没有锁竞争
+ */
+@Component
+public class CacheMetrics {
+
+    /**
+     * 最多统计的命名空间数量，超过后归入 other，避免键格式异常时无限增长
+     */
+    private static final int MAX_NAMESPACES = 200;
+
+    private static final String OTHER_NAMESPACE = "other";
+
+    /**
+     * 值大小分布的区间上限（字节）
+     */
+    private static final long[] SIZE_BUCKET_BOUNDS = {1024, 4 * 1024, 16 * 1024, 64 * 1024, 256 * 1024};
+
+    private static final String[] SIZE_BUCKET_NAMES = {"<1KB", "<4KB", "<16KB", "<64KB", "<256KB", ">=256KB"};
+
+    private final ConcurrentHashMap<String, NamespaceMetrics> namespaceMetricsMap = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存键对应的命名空间：第一段，第二段是纯字母时也算在内
+     * 例如 picture:vo:123 -> picture:vo，listPictureVOByPage:{hash}:v1 -> listPictureVOByPage
+     */
+    public static String namespaceOf(String key) {
+        int first = key.indexOf(':');
+        if (first < 0) {
+            return key;
+        }
+        int second = key.indexOf(':', first + 1);
+        int end = second < 0 ? key.length() : second;
+        if (end > first + 1 && isLetters(key, first + 1, end)) {
+            return key.substring(0, end);
+        }
+        return key.substring(0, first);
+    }
+
+    private static boolean isLetters(String key, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isLetter(key.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 本地缓存命中
+     */
+    public void recordLocalHit(String key) {
+        metricsOf(key).localHits.increment();
+    }
+
+    /**
+     * 查询 Redis
+     */
+    public void recordRedisLookup(String key, long nanos, boolean hit) {
+        NamespaceMetrics metrics = metricsOf(key);
+        metrics.redisTimeNanos.add(nanos);
+        if (hit) {
+            metrics.redisHits.increment();
+        } else {
+            metrics.misses.increment();
+        }
+    }
+
+    /**
+     * 回源加载
+     */
+    public void recordLoad(String key, long nanos, boolean success) {
+        NamespaceMetrics metrics = metricsOf(key);
+        metrics.loads.increment();
+        metrics.loadTimeNanos.add(nanos);
+        metrics.maxLoadNanos.accumulate(nanos);
+        if (!success) {
+            metrics.loadFailures.increment();
+        }
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param valueBytes 写入的字节数（压缩后）
+     * @param uncompressedBytes 未压缩时的字节数
+     */
+    public void recordWrite(String key, int valueBytes, int uncompressedBytes) {
+        NamespaceMetrics metrics = metricsOf(key);
+        metrics.writes.increment();
+        metrics.valueBytes.add(valueBytes);
+        metrics.uncompressedBytes.add(uncompressedBytes);
+        if (valueBytes < uncompressedBytes) {
+            metrics.compressedWrites.increment();
+        }
+        int bucket = 0;
+        while (bucket < SIZE_BUCKET_BOUNDS.length && valueBytes >= SIZE_BUCKET_BOUNDS[bucket]) {
+            bucket++;
+        }
+        metrics.sizeBuckets[bucket].increment();
+    }
+
+    /**
+     * 本地缓存淘汰
+     */
+    public void recordEviction(String key) {
+        metricsOf(key).evictions.increment();
+    }
+
+    /**
+     * 当前统计快照，按读取次数从多到少排序
+     */
+    public List<CacheNamespaceStatsVO> snapshot() {
+        List<CacheNamespaceStatsVO> result = new ArrayList<>(namespaceMetricsMap.size());
+        namespaceMetricsMap.forEach((namespace, metrics) -> result.add(metrics.toVO(namespace)));
+        result.sort(Comparator.comparing(CacheNamespaceStatsVO::getRequestCount).reversed());
+        return result;
+    }
+
+    private NamespaceMetrics metricsOf(String key) {
+        String namespace = namespaceOf(key);
+        NamespaceMetrics metrics = namespaceMetricsMap.get(namespace);
+        if (metrics != null) {
+            return metrics;
+        }
+        if (namespaceMetricsMap.size() >= MAX_NAMESPACES) {
+            namespace = OTHER_NAMESPACE;
+        }
+        return namespaceMetricsMap.computeIfAbsent(namespace, k -> new NamespaceMetrics());
+    }
+
+    /**
+     * 单个命名空间的计数器
+     */
+    private static class NamespaceMetrics {
+
+        private final LongAdder localHits = new LongAdder();
+
+        private final LongAdder redisHits = new LongAdder();
+
+        private final LongAdder misses = new LongAdder();
+
+        private final LongAdder redisTimeNanos = new LongAdder();
+
+        private final LongAdder loads = new LongAdder();
+
+        private final LongAdder loadFailures = new LongAdder();
+
+        private final LongAdder loadTimeNanos = new LongAdder();
+
+        private final LongAccumulator maxLoadNanos = new LongAccumulator(Math::max, 0);
+
+        private final LongAdder evictions = new LongAdder();
+
+        private final LongAdder writes = new LongAdder();
+
+        private final LongAdder valueBytes = new LongAdder();
+
+        private final LongAdder uncompressedBytes = new LongAdder();
+
+        private final LongAdder compressedWrites = new LongAdder();
+
+        private final LongAdder[] sizeBuckets = new LongAdder[SIZE_BUCKET_NAMES.length];
+
+        private NamespaceMetrics() {
+            for (int i = 0; i < sizeBuckets.length; i++) {
+                sizeBuckets[i] = new LongAdder();
+            }
+        }
+
+        private CacheNamespaceStatsVO toVO(String namespace) {
+            long localHitCount = localHits.sum();
+            long redisHitCount = redisHits.sum();
+            long missCount = misses.sum();
+            long requestCount = localHitCount + redisHitCount + missCount;
+            long redisLookupCount = redisHitCount + missCount;
+            long loadCount = loads.sum();
+            long writeCount = writes.sum();
+
+            CacheNamespaceStatsVO vo = new CacheNamespaceStatsVO();
+            vo.setNamespace(namespace);
+            vo.setRequestCount(requestCount);
+            vo.setLocalHitCount(localHitCount);
+            vo.setRedisHitCount(redisHitCount);
+            vo.setMissCount(missCount);
+            vo.setHitRate(ratio(localHitCount + redisHitCount, requestCount));
+            vo.setLocalHitRate(ratio(localHitCount, requestCount));
+            vo.setAvgRedisMillis(toMillis(ratio(redisTimeNanos.sum(), redisLookupCount)));
+            vo.setLoadCount(loadCount);
+            vo.setLoadFailureCount(loadFailures.sum());
+            vo.setAvgLoadMillis(toMillis(ratio(loadTimeNanos.sum(), loadCount)));
+            vo.setMaxLoadMillis(toMillis(maxLoadNanos.get()));
+            vo.setEvictionCount(evictions.sum());
+            vo.setWriteCount(writeCount);
+            long valueByteCount = valueBytes.sum();
+            vo.setAvgValueBytes(ratio(valueByteCount, writeCount));
+            vo.setCompressedWriteCount(compressedWrites.sum());
+            long uncompressedByteCount = uncompressedBytes.sum();
+            vo.setCompressionRatio(uncompressedByteCount == 0 ? 1 : (double) valueByteCount / uncompressedByteCount);
+            Map<String, Long> distribution = new LinkedHashMap<>();
+            for (int i = 0; i < sizeBuckets.length; i++) {
+                distribution.put(SIZE_BUCKET_NAMES[i], sizeBuckets[i].sum());
+            }
+            vo.setValueSizeDistribution(distribution);
+            return vo;
+        }
+
+        private static double ratio(double numerator, long denominator) {
+            return denominator == 0 ? 0 : numerator / denominator;
+        }
+
+        private static double toMillis(double nanos) {
+            return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
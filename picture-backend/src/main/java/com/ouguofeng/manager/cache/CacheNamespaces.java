@@ -0,0 +1,27 @@
+package com.ouguofeng.manager.cache;
+
+/**
+ * 缓存命名空间
+ * 每个命名空间在 Redis 中有一个版本号，缓存键带上版本号，
+ * 清除整个命名空间只需要把版本号加一，旧版本的缓存不再被读取，由过期时间自然淘汰
+ */
+public class CacheNamespaces {
+
+    /**
+     * 公共图库
+     */
+    public static final String PUBLIC_PICTURE = "picture:public";
+
+    private static final String SPACE = "space:";
+
+    private CacheNamespaces() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * 空间
+     */
+    public static String space(Long spaceId) {
+        return SPACE + spaceId;
+    }
+}
@@ -0,0 +1,156 @@
+package com.ouguofeng.manager.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.lang.reflect.Type;
+
+/**
+ * 缓存值编解码
+ * Redis 中的缓存值使用 Jackson Smile 二进制格式，比 JSON 字符串更紧凑，解析也更快
+ * 编码结果以固定长度的头部开始：1 字节格式标记 + 8 字节软过期时间戳（毫秒）
+ * 较大的值使用 LZ4 压缩，压缩格式的头部之后再加 4 字节原始长度
+ */
+@Component
+public class CacheValueCodec {
+
+    /**
+     * 格式标记，无法识别的格式（如旧版本写入的缓存）按解码失败处理
+     */
+    private static final byte FORMAT_V1 = 1;
+
+    /**
+     * LZ4 压缩格式标记
+     */
+    private static final byte FORMAT_LZ4 = 2;
+
+    /**
+     * 头部长度
+     */
+    private static final int HEADER_LENGTH = 1 + Long.BYTES;
+
+    /**
+     * 压缩格式的头部长度（多出原始长度）
+     */
+    private static final int LZ4_HEADER_LENGTH = HEADER_LENGTH + Integer.BYTES;
+
+    /**
+     * 编码后不小于该长度（字节）时压缩，小值压缩收益很小
+     */
+    private static final int COMPRESSION_THRESHOLD = 2048;
+
+    private final ObjectMapper objectMapper;
+
+    private final LZ4Compressor compressor;
+
+    private final LZ4FastDecompressor decompressor;
+
+    public CacheValueCodec() {
+        objectMapper = new ObjectMapper(new SmileFactory());
+        // 缓存结构变化时忽略多余字段，避免旧缓存无法读取
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // 不写入空字段，减小体积
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        LZ4Factory lz4Factory = LZ4Factory.fastestInstance();
+        compressor = lz4Factory.fastCompressor();
+        decompressor = lz4Factory.fastDecompressor();
+    }
+
+    /**
+     * 编码
+     *
+     * @param softExpireAt 软过期时间戳（毫秒），超过后缓存值仍可返回，但需要后台刷新
+     */
+    public byte[] encode(Object value, long softExpireAt) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new IllegalStateException("缓存值编码失败", e);
+        }
+        if (payload.length >= COMPRESSION_THRESHOLD) {
+            byte[] compressed = new byte[LZ4_HEADER_LENGTH + compressor.maxCompressedLength(payload.length)];
+            int compressedLength = compressor.compress(payload, 0, payload.length,
+                    compressed, LZ4_HEADER_LENGTH);
+            // 压缩后没有变小（如已经高度紧凑的数据）时不压缩
+            if (compressedLength < payload.length) {
+                ByteBuffer.wrap(compressed).put(FORMAT_LZ4).putLong(softExpireAt).putInt(payload.length);
+                byte[] result = new byte[LZ4_HEADER_LENGTH + compressedLength];
+                System.arraycopy(compressed, 0, result, 0, result.length);
+                return result;
+            }
+        }
+        return ByteBuffer.allocate(HEADER_LENGTH + payload.length)
+                .put(FORMAT_V1)
+                .putLong(softExpireAt)
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * 读取软过期时间戳（毫秒）
+     */
+    public long readSoftExpireAt(byte[] bytes) {
+        checkHeader(bytes);
+        return ByteBuffer.wrap(bytes, 1, Long.BYTES).getLong();
+    }
+
+    /**
+     * 是否是压缩格式
+     */
+    public boolean isCompressed(byte[] bytes) {
+        checkHeader(bytes);
+        return bytes[0] == FORMAT_LZ4;
+    }
+
+    /**
+     * 未压缩时的编码长度（字节），用于统计压缩率
+     */
+    public int uncompressedLength(byte[] bytes) {
+        if (!isCompressed(bytes)) {
+            return bytes.length;
+        }
+        return HEADER_LENGTH + ByteBuffer.wrap(bytes, HEADER_LENGTH, Integer.BYTES).getInt();
+    }
+
+    /**
+     * 解码
+     */
+    public <T> T decode(byte[] bytes, JavaType type) {
+        checkHeader(bytes);
+        try {
+            if (bytes[0] == FORMAT_LZ4) {
+                int payloadLength = ByteBuffer.wrap(bytes, HEADER_LENGTH, Integer.BYTES).getInt();
+                byte[] payload = decompressor.decompress(bytes, LZ4_HEADER_LENGTH, payloadLength);
+                return objectMapper.readValue(payload, type);
+            }
+            return objectMapper.readValue(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, type);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("缓存值解码失败", e);
+        }
+    }
+
+    private void checkHeader(byte[] bytes) {
+        boolean valid = (bytes.length >= HEADER_LENGTH && bytes[0] == FORMAT_V1)
+                || (bytes.length >= LZ4_HEADER_LENGTH && bytes[0] == FORMAT_LZ4);
+        if (!valid) {
+            throw new IllegalStateException("无法识别的缓存值格式");
+        }
+    }
+
+    /**
+     * 构造解码目标类型
+     */
+    public JavaType constructType(Type type) {
+        return objectMapper.getTypeFactory().constructType(type);
+    }
+}
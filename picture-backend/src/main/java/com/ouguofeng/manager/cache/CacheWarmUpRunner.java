@@ -0,0 +1,111 @@
+package com.ouguofeng.manager.cache;
+
+import com.ouguofeng.model.dto.picture.PictureQueryRequest;
+import com.ouguofeng.service.PictureService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 启动时预热缓存
+ * 在应用对外提供服务（ApplicationRunner 全部执行完才发布就绪状态）之前，
+ * 提前加载首页默认查询的前几页公共图库和标签分类，避免刚启动时请求集中回源
+ * 预热失败或超时只记录日志，不影响启动
+ */
+@Slf4j
+@Component
+public class CacheWarmUpRunner implements ApplicationRunner {
+
+    @Value("${cache.warm-up.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 预热的页数
+     */
+    @Value("${cache.warm-up.pages:3}")
+    private int pages;
+
+    /**
+     * 每页条数，需要与前端首页的默认值一致，否则缓存键不同
+     */
+    @Value("${cache.warm-up.page-size:30}")
+    private int pageSize;
+
+    /**
+     * 预热的排序字段，每个字段都按降序预热
+     */
+    @Value("${cache.warm-up.sort-fields:createTime}")
+    private String[] sortFields;
+
+    /**
+     * 预热总耗时上限（秒）
+     */
+    @Value("${cache.warm-up.timeout-seconds:10}")
+    private int timeoutSeconds;
+
+    @Resource
+    private PictureService pictureService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(4, pages * sortFields.length + 1));
+        try {
+            Map<String, CompletableFuture<Void>> tasks = new LinkedHashMap<>();
+            tasks.put("tag_category", CompletableFuture.runAsync(pictureService::getPictureTagCategory, executor));
+            for (String sortField : sortFields) {
+                for (int current = 1; current <= pages; current++) {
+                    PictureQueryRequest pictureQueryRequest = buildHomePageQuery(current, sortField);
+                    tasks.put(sortField + ":" + current, CompletableFuture.runAsync(
+                            () -> pictureService.listPublicPictureVOByPageWithCache(pictureQueryRequest), executor));
+                }
+            }
+            long deadline = start + TimeUnit.SECONDS.toMillis(timeoutSeconds);
+            int success = 0;
+            for (Map.Entry<String, CompletableFuture<Void>> task : tasks.entrySet()) {
+                try {
+                    task.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    success++;
+                } catch (TimeoutException e) {
+                    log.warn("缓存预热超时：{}", task.getKey());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("缓存预热失败：{}", task.getKey(), e);
+                }
+            }
+            log.info("缓存预热完成，成功 {}/{}，耗时 {} ms", success, tasks.size(), System.currentTimeMillis() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 与前端首页默认请求相同的查询条件
+     */
+    private PictureQueryRequest buildHomePageQuery(int current, String sortField) {
+        PictureQueryRequest pictureQueryRequest = new PictureQueryRequest();
+        pictureQueryRequest.setCurrent(current);
+        pictureQueryRequest.setPageSize(pageSize);
+        pictureQueryRequest.setSortField(sortField);
+        pictureQueryRequest.setSortOrder("descend");
+        pictureQueryRequest.setTags(new ArrayList<>());
+        return pictureQueryRequest;
+    }
+}
@@ -0,0 +1,33 @@
+package com.ouguofeng.manager.cache;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 列表查询结果缓存（只保存有序的 id 列表和总数）
+ * 列表页的内容从每个对象单独的缓存中批量读取，对象被修改时只需要清除它自己的缓存
+ */
+@Data
+public class CachedIdPage {
+
+    /**
+     * 当前页的 id，按查询结果排序
+     */
+    private List<Long> ids;
+
+    /**
+     * 总条数
+     */
+    private long total;
+
+    /**
+     * 当前页码
+     */
+    private long current;
+
+    /**
+     * 每页条数
+     */
+    private long size;
+}
@@ -0,0 +1,116 @@
+package com.ouguofeng.manager.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 热点键识别
+ * 使用 Count-Min Sketch 估算每个缓存键最近的访问频率，内存占用固定，与键的数量无关；
+ * 累计访问次数达到采样窗口后所有计数减半，频率随时间衰减，只反映最近的热度
+ */
+@Component
+public class HotKeyDetector {
+
+    /**
+     * 哈希行数
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * 每行计数器数量（2 的幂）
+     */
+    private static final int WIDTH = 1 << 14;
+
+    /**
+     * 采样窗口，累计访问次数达到后计数减半
+     */
+    private static final long SAMPLE_SIZE = 10L * WIDTH;
+
+    /**
+     * 达到该频率视为热点键
+     */
+    private static final int HOT_THRESHOLD = 16;
+
+    /**
+     * 不超过该频率视为冷键
+     */
+    private static final int COLD_THRESHOLD = 1;
+
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final AtomicIntegerArray counters = new AtomicIntegerArray(DEPTH * WIDTH);
+
+    private final AtomicLong additions = new AtomicLong();
+
+    private final AtomicBoolean resetting = new AtomicBoolean(false);
+
+    /**
+     * 记录一次访问
+     *
+     * @return 记录后的估算频率
+     */
+    public int record(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, counters.incrementAndGet(indexOf(hash, i)));
+        }
+        if (additions.incrementAndGet() >= SAMPLE_SIZE) {
+            reset();
+        }
+        return frequency;
+    }
+
+    /**
+     * 估算频率
+     */
+    public int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, counters.get(indexOf(hash, i)));
+        }
+        return frequency;
+    }
+
+    public boolean isHot(int frequency) {
+        return frequency >= HOT_THRESHOLD;
+    }
+
+    public boolean isCold(int frequency) {
+        return frequency <= COLD_THRESHOLD;
+    }
+
+    /**
+     * 所有计数减半，同一时间只有一个线程执行
+     */
+    private void reset() {
+        if (!resetting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.set(i, counters.get(i) >>> 1);
+            }
+            additions.set(0);
+        } finally {
+            resetting.set(false);
+        }
+    }
+
+    private static int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+        h ^= h >>> 16;
+        return row * WIDTH + (h & (WIDTH - 1));
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x45D9F3B;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,162 @@
+package com.ouguofeng.manager.cache;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.ouguofeng.model.dto.picture.PictureQueryRequest;
+import com.ouguofeng.model.entity.Picture;
+import com.ouguofeng.model.enums.PictureReviewStatusEnum;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 图片列表缓存的依赖标签
+ * 每个缓存的列表页（id 列表）记录它依赖的标签（用户、分类、标签、审核状态），
+ * 图片写操作只清除结果可能变化的列表，不再清空全部列表缓存；
+ * 列表页中图片的内容来自单张图片的缓存，只修改内容时不需要清除列表
+ */
+public class PictureCacheTags {
+
+    private static final String USER = "user:";
+
+    private static final String CATEGORY = "category:";
+
+    private static final String TAG = "tag:";
+
+    private static final String REVIEW = "review:";
+
+    /**
+     * 查询结果依赖可编辑字段（搜索词、名称、编辑时间、按可编辑字段排序等），图片内容被编辑时需要失效
+     */
+    private static final String MUTABLE = "mutable";
+
+    /**
+     * 会被编辑操作修改的排序字段
+     */
+    private static final Set<String> MUTABLE_SORT_FIELDS = Set.of("name", "introduction", "category", "tags",
+            "editTime", "updateTime", "reviewStatus", "reviewMessage", "reviewTime");
+
+    private PictureCacheTags() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * 列表查询条件对应的依赖标签
+     * 只取最有区分度的一个过滤条件作为索引：能匹配该查询的图片一定带有这个维度的值
+     */
+    public static Set<String> ofQuery(PictureQueryRequest pictureQueryRequest) {
+        Set<String> tags = new HashSet<>();
+        Long userId = pictureQueryRequest.getUserId();
+        String category = pictureQueryRequest.getCategory();
+        List<String> tagList = pictureQueryRequest.getTags();
+        if (userId != null) {
+            tags.add(USER + userId);
+        } else if (StrUtil.isNotBlank(category)) {
+            tags.add(CATEGORY + category);
+        } else if (CollUtil.isNotEmpty(tagList)) {
+            tags.add(TAG + tagList.get(0));
+        } else {
+            // 没有可索引的过滤条件，任何图片进出图库都会影响结果
+            tags.add(REVIEW + pictureQueryRequest.getReviewStatus());
+        }
+        boolean dependsOnMutableField = StrUtil.isNotBlank(pictureQueryRequest.getSearchText())
+                || StrUtil.isNotBlank(pictureQueryRequest.getName())
+                || StrUtil.isNotBlank(pictureQueryRequest.getIntroduction())
+                || StrUtil.isNotBlank(pictureQueryRequest.getReviewMessage())
+                || pictureQueryRequest.getStartEditTime() != null
+                || pictureQueryRequest.getEndEditTime() != null
+                // Set.of 创建的集合 contains(null) 会抛出空指针异常
+                || (pictureQueryRequest.getSortField() != null
+                && MUTABLE_SORT_FIELDS.contains(pictureQueryRequest.getSortField()));
+        if (dependsOnMutableField) {
+            tags.add(MUTABLE);
+        }
+        return tags;
+    }
+
+    /**
+     * 一次图片写操作需要失效的标签
+     *
+     * @param oldPicture 写之前的图片（新增时为 null）
+     * @param newPicture 写之后的图片（删除时为 null）
+     * @return 需要失效的标签，不影响公共图库时为空集合
+     */
+    public static Set<String> ofWrite(Picture oldPicture, Picture newPicture) {
+        Set<String> tags = new HashSet<>();
+        boolean oldVisible = isVisible(oldPicture);
+        boolean newVisible = isVisible(newPicture);
+        // 私有空间、待审核、已拒绝的图片不会出现在公共图库中，不需要清除任何列表缓存
+        if (!oldVisible && !newVisible) {
+            return tags;
+        }
+        if (oldVisible != newVisible) {
+            // 图片进出公共图库，匹配它的查询结果都会变化
+            addPictureTags(tags, oldVisible ? oldPicture : newPicture);
+            tags.add(REVIEW + PictureReviewStatusEnum.PASS.getValue());
+            return tags;
+        }
+        // 图片仍在公共图库中：查询只按一个过滤条件建立索引（如同时按用户和分类过滤的查询只记在用户标签下），
+        // 即使某个维度的值没有变化，按它索引的查询也可能因为其他维度的变化而改变，新旧图片的所有标签都要清除
+        addPictureTags(tags, oldPicture);
+        addPictureTags(tags, newPicture);
+        if (isLayoutChanged(oldPicture, newPicture)) {
+            // 影响过滤的文件属性变化
+            tags.add(REVIEW + PictureReviewStatusEnum.PASS.getValue());
+        }
+        // 按可编辑字段搜索或排序的查询
+        tags.add(MUTABLE);
+        return tags;
+    }
+
+    /**
+     * 将部分字段的更新对象合并到原图片上，得到写之后的完整图片
+     */
+    public static Picture afterUpdate(Picture oldPicture, Picture updatePicture) {
+        Picture picture = new Picture();
+        BeanUtil.copyProperties(oldPicture, picture);
+        BeanUtil.copyProperties(updatePicture, picture, CopyOptions.create().setIgnoreNullValue(true));
+        return picture;
+    }
+
+    /**
+     * 图片是否出现在公共图库中
+     */
+    public static boolean isVisible(Picture picture) {
+        return picture != null
+                && picture.getSpaceId() == null
+                && ObjUtil.equals(picture.getReviewStatus(), PictureReviewStatusEnum.PASS.getValue())
+                && (picture.getIsDelete() == null || picture.getIsDelete() == 0);
+    }
+
+    private static void addPictureTags(Set<String> tags, Picture picture) {
+        tags.add(USER + picture.getUserId());
+        if (StrUtil.isNotBlank(picture.getCategory())) {
+            tags.add(CATEGORY + picture.getCategory());
+        }
+        String pictureTags = picture.getTags();
+        if (StrUtil.isNotBlank(pictureTags) && JSONUtil.isTypeJSONArray(pictureTags)) {
+            for (String tag : JSONUtil.toList(pictureTags, String.class)) {
+                tags.add(TAG + tag);
+            }
+        }
+    }
+
+    /**
+     * 重新上传会改变文件属性，按这些属性过滤的查询没有单独的索引标签
+     */
+    private static boolean isLayoutChanged(Picture oldPicture, Picture newPicture) {
+        if (oldPicture == null || newPicture == null) {
+            return false;
+        }
+        return ObjUtil.notEqual(oldPicture.getPicSize(), newPicture.getPicSize())
+                || ObjUtil.notEqual(oldPicture.getPicWidth(), newPicture.getPicWidth())
+                || ObjUtil.notEqual(oldPicture.getPicHeight(), newPicture.getPicHeight())
+                || ObjUtil.notEqual(oldPicture.getPicScale(), newPicture.getPicScale())
+                || ObjUtil.notEqual(oldPicture.getPicFormat(), newPicture.getPicFormat());
+    }
+}
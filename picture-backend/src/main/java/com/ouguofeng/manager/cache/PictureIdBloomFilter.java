@@ -0,0 +1,177 @@
+package com.ouguofeng.manager.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.model.entity.Picture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 图片 id 布隆过滤器（防止缓存穿透）
+ * 定时从数据库重建，判断为不存在的 id 直接返回，不再访问 Redis 和数据库
+ * 图片 id 是雪花算法生成的，重建开始前一段时间之后生成的 id 可能还没有被扫描到，这部分 id 一律放行
+ */
+@Slf4j
+@Component
+public class PictureIdBloomFilter {
+
+    /**
+     * 误判率
+     */
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    /**
+     * 最少按该数量分配空间，图片数较少时也留出增长余量
+     */
+    private static final long MIN_EXPECTED_INSERTIONS = 1 << 20;
+
+    /**
+     * 重建时每批读取的 id 数量
+     */
+    private static final int REBUILD_BATCH_SIZE = 10_000;
+
+    /**
+     * 重建前多久之后生成的 id 一律放行（等待未提交的事务）
+     */
+    private static final long UNCOMMITTED_WINDOW_MILLIS = 60_000L;
+
+    /**
+     * 雪花算法起始时间戳（MyBatis-Plus 默认值）和时间戳左移位数
+     */
+    private static final long SNOWFLAKE_EPOCH = 1288834974657L;
+
+    private static final int SNOWFLAKE_TIMESTAMP_SHIFT = 22;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    /**
+     * 当前使用的过滤器，重建完成后整体替换；为 null 表示还没有建好，全部放行
+     */
+    private volatile Filter filter;
+
+    /**
+     * 图片 id 是否可能存在
+     */
+    public boolean mightContain(long pictureId) {
+        Filter current = filter;
+        return current == null || pictureId >= current.passThroughFromId || current.mightContain(pictureId);
+    }
+
+    /**
+     * 新增图片时记录 id
+     */
+    public void put(long pictureId) {
+        Filter current = filter;
+        if (current != null) {
+            current.put(pictureId);
+        }
+    }
+
+    /**
+     * 定时重建（启动后稍等片刻执行第一次，之后每小时一次），清除已删除图片的 id
+     */
+    @Scheduled(initialDelay = 10_000L, fixedDelay = 3_600_000L)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            Long count = pictureMapper.selectCount(new QueryWrapper<>());
+            Filter newFilter = new Filter(Math.max(count * 2, MIN_EXPECTED_INSERTIONS),
+                    snowflakeIdAt(start - UNCOMMITTED_WINDOW_MILLIS));
+            long lastId = Long.MIN_VALUE;
+            long total = 0;
+            while (true) {
+                // 按 id 递增分批读取，只查询 id 列
+                QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
+                queryWrapper.select("id").gt("id", lastId).orderByAsc("id").last("limit " + REBUILD_BATCH_SIZE);
+                List<Object> ids = pictureMapper.selectObjs(queryWrapper);
+                for (Object id : ids) {
+                    newFilter.put(((Number) id).longValue());
+                }
+                total += ids.size();
+                if (ids.size() < REBUILD_BATCH_SIZE) {
+                    break;
+                }
+                lastId = ((Number) ids.get(ids.size() - 1)).longValue();
+            }
+            filter = newFilter;
+            log.info("图片 id 布隆过滤器重建完成，共 {} 个 id，耗时 {} ms", total, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // 重建失败时继续使用旧的过滤器
+            log.error("图片 id 布隆过滤器重建失败", e);
+        }
+    }
+
+    /**
+     * 指定时间对应的最小雪花 id
+     */
+    private static long snowflakeIdAt(long timestampMillis) {
+        return (timestampMillis - SNOWFLAKE_EPOCH) << SNOWFLAKE_TIMESTAMP_SHIFT;
+    }
+
+    /**
+     * 位数组和哈希函数
+     */
+    private static class Filter {
+
+        private final AtomicLongArray bits;
+
+        private final long bitSize;
+
+        private final int hashCount;
+
+        /**
+         * 不小于该值的 id 不做判断
+         */
+        private final long passThroughFromId;
+
+        private Filter(long expectedInsertions, long passThroughFromId) {
+            long size = (long) Math.ceil(-expectedInsertions * Math.log(FALSE_POSITIVE_PROBABILITY)
+                    / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((size + 63) >>> 6));
+            this.bitSize = (long) bits.length() << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+            this.passThroughFromId = passThroughFromId;
+        }
+
+        private void put(long id) {
+            long hash1 = mix(id);
+            long hash2 = mix(hash1) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(hash1 + i * hash2, bitSize);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long current;
+                do {
+                    current = bits.get(word);
+                } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        private boolean mightContain(long id) {
+            long hash1 = mix(id);
+            long hash2 = mix(hash1) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(hash1 + i * hash2, bitSize);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            value *= 0xc4ceb9fe1a85ec53L;
+            value ^= value >>> 33;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.ouguofeng.manager.cache;
+
+import cn.hutool.core.util.StrUtil;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.protocol.ProtocolVersion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Redis 客户端缓存失效通知（RESP3 CLIENT TRACKING）
+ * 开启后，本地缓存从 Redis 读取的键都通过一条开启了 tracking 的专用连接读取，
+ * 这些键在 Redis 中被修改、删除或过期时，Redis 主动推送失效消息，本地缓存随即清除
+ * 连接断开期间 tracking 失效，此时退回普通读取，并清空本地缓存
+ */
+@Slf4j
+@Component
+public class RedisClientTracking {
+
+    @Value("${cache.client-tracking.enabled:false}")
+    private boolean enabled;
+
+    @Resource
+    private RedisProperties redisProperties;
+
+    private RedisClient redisClient;
+
+    private volatile StatefulRedisConnection<String, byte[]> connection;
+
+    /**
+     * tracking 是否生效（连接正常并且已经开启 tracking）
+     */
+    private volatile boolean active;
+
+    /**
+     * 收到失效消息时的处理器，由本地缓存的持有者注册
+     */
+    private volatile InvalidationListener invalidationListener;
+
+    /**
+     * 失效消息处理接口
+     */
+    public interface InvalidationListener {
+
+        /**
+         * 清除指定的本地缓存
+         */
+        void invalidate(Collection<String> keys);
+
+        /**
+         * 清除全部本地缓存
+         */
+        void invalidateAll();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            RedisURI.Builder uriBuilder = RedisURI.builder()
+                    .withHost(redisProperties.getHost())
+                    .withPort(redisProperties.getPort())
+                    .withDatabase(redisProperties.getDatabase())
+                    .withSsl(redisProperties.isSsl());
+            if (redisProperties.getTimeout() != null) {
+                uriBuilder.withTimeout(redisProperties.getTimeout());
+            }
+            if (StrUtil.isNotEmpty(redisProperties.getPassword())) {
+                if (StrUtil.isNotEmpty(redisProperties.getUsername())) {
+                    uriBuilder.withAuthentication(redisProperties.getUsername(), redisProperties.getPassword());
+                } else {
+                    uriBuilder.withPassword(redisProperties.getPassword().toCharArray());
+                }
+            }
+            redisClient = RedisClient.create(uriBuilder.build());
+            redisClient.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP3).build());
+            redisClient.addListener(new RedisConnectionStateListener() {
+                @Override
+                public void onRedisConnected(RedisChannelHandler<?, ?> handler, SocketAddress socketAddress) {
+                    // 重连后是新的服务端连接，需要重新开启 tracking
+                    enableTracking();
+                }
+
+                @Override
+                public void onRedisDisconnected(RedisChannelHandler<?, ?> handler) {
+                    // 断开期间收不到失效消息，停止使用并清空本地缓存
+                    active = false;
+                    notifyInvalidateAll();
+                }
+
+                @Override
+                public void onRedisExceptionCaught(RedisChannelHandler<?, ?> handler, Throwable cause) {
+                    // 连接异常由断开事件处理
+                }
+            });
+            connection = redisClient.connect(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
+            connection.addListener(this::onPushMessage);
+            enableTracking();
+            log.info("Redis 客户端缓存失效通知已开启");
+        } catch (Exception e) {
+            // 开启失败时继续使用普通读取和广播失效
+            log.error("开启 Redis 客户端缓存失效通知失败", e);
+            shutdown();
+        }
+    }
+
+    public void setInvalidationListener(InvalidationListener invalidationListener) {
+        this.invalidationListener = invalidationListener;
+    }
+
+    /**
+     * 是否可以通过 tracking 连接读取
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * 通过 tracking 连接读取，Redis 会记录该键并在变化时推送失效消息
+     */
+    public byte[] get(String key) {
+        return connection.sync().get(key);
+    }
+
+    /**
+     * 通过 tracking 连接批量读取，返回值与键一一对应，不存在的键为 null
+     */
+    public List<byte[]> mget(List<String> keys) {
+        List<KeyValue<String, byte[]>> keyValues = connection.sync().mget(keys.toArray(new String[0]));
+        List<byte[]> values = new ArrayList<>(keyValues.size());
+        for (KeyValue<String, byte[]> keyValue : keyValues) {
+            values.add(keyValue.getValueOrElse(null));
+        }
+        return values;
+    }
+
+    private void enableTracking() {
+        StatefulRedisConnection<String, byte[]> current = connection;
+        if (current == null) {
+            // 首次连接时 connection 还没有赋值，由 init 开启
+            return;
+        }
+        current.async().clientTracking(TrackingArgs.Builder.enabled()).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("开启 Redis CLIENT TRACKING 失败", e);
+                active = false;
+                return;
+            }
+            // 开启前读取的键没有被跟踪，清空后重新读取
+            notifyInvalidateAll();
+            active = true;
+        });
+    }
+
+    private void onPushMessage(PushMessage message) {
+        if (!"invalidate".equals(message.getType())) {
+            return;
+        }
+        InvalidationListener listener = invalidationListener;
+        if (listener == null) {
+            return;
+        }
+        List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+        Object keys = content.size() > 1 ? content.get(1) : null;
+        if (keys instanceof Collection) {
+            @SuppressWarnings("unchecked")
+            Collection<String> keyCollection = (Collection<String>) keys;
+            listener.invalidate(keyCollection);
+        } else {
+            // 没有键表示 Redis 执行了 FLUSHDB / FLUSHALL
+            listener.invalidateAll();
+        }
+    }
+
+    private void notifyInvalidateAll() {
+        InvalidationListener listener = invalidationListener;
+        if (listener != null) {
+            listener.invalidateAll();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        active = false;
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+        if (redisClient != null) {
+            redisClient.shutdown(Duration.ZERO, Duration.ofSeconds(2));
+            redisClient = null;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.ouguofeng.manager.counter;
+
+import cn.hutool.core.collection.CollUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.model.entity.Picture;
+import com.ouguofeng.model.vo.PictureVO;
+import com.ouguofeng.service.CacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 图片点赞数和收藏数计数器（写回缓存）
+ * 点赞、收藏时只在 Redis 中原子加减，不再读改写整行图片，也不锁图片行；
+ * 变化过的图片记录在脏集合中，由定时任务批量写回数据库
+ * 读取图片时用 Redis 中的计数覆盖数据库中可能还没写回的值
+ * 开启计数分片（{@link PictureCounterStripeManager}）时改为写入数据库分片表；
+ * 启动时发现计数方式与上次不同，先把旧方式中未写回的计数写入数据库，再删除 Redis 中的计数器，避免旧值覆盖数据库
+ */
+@Slf4j
+@Component
+public class PictureCounterManager {
+
+    /**
+     * 计数器键前缀，每张图片一个 Hash，字段为点赞数和收藏数
+     */
+    private static final String COUNTER_KEY_PREFIX = "picture:counter:";
+
+    /**
+     * 待写回数据库的图片 id 集合
+     */
+    private static final String DIRTY_KEY = "picture:counter:dirty";
+
+    private static final String LIKE_COUNT_FIELD = "likeCount";
+
+    private static final String FAVORITE_COUNT_FIELD = "favoriteCount";
+
+    /**
+     * 计数器的过期时间（秒），每次变化时续期；远大于写回间隔，写回前不会过期
+     */
+    private static final long COUNTER_EXPIRE_SECONDS = 7 * 24 * 3600L;
+
+    /**
+     * 每批写回的图片数量
+     */
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * 写回锁，多个节点同时写回时可能用旧值覆盖新值
+     */
+    private static final String FLUSH_LOCK_KEY = "picture:counter:flush";
+
+    private static final long FLUSH_LOCK_TIMEOUT_SECONDS = 60;
+
+    /**
+     * 当前使用的计数方式（redis / stripe）
+     */
+    private static final String MODE_KEY = "picture:counter:mode";
+
+    private static final String MODE_REDIS = "redis";
+
+    private static final String MODE_STRIPE = "stripe";
+
+    /**
+     * 切换计数方式时每批删除的计数器数量
+     */
+    private static final int CLEAR_BATCH_SIZE = 1000;
+
+    /**
+     * 批量加减：存在的计数器加减并记录到脏集合，结果不小于 0；返回不存在的计数器对应的图片 id，由调用方从数据库初始化
+     * KEYS 为各图片的计数器，最后一个是脏集合；ARGV 依次为字段、增量、过期时间，之后是与计数器一一对应的图片 id
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "local missing = {} " +
+                    "for i = 1, #KEYS - 1 do " +
+                    "if redis.call('EXISTS', KEYS[i]) == 0 then table.insert(missing, ARGV[i + 3]) " +
+                    "else " +
+                    "local value = redis.call('HINCRBY', KEYS[i], ARGV[1], ARGV[2]) " +
+                    "if value < 0 then redis.call('HSET', KEYS[i], ARGV[1], 0) end " +
+                    "redis.call('EXPIRE', KEYS[i], ARGV[3]) " +
+                    "redis.call('SADD', KEYS[#KEYS], ARGV[i + 3]) " +
+                    "end " +
+                    "end " +
+                    "return missing",
+            List.class);
+
+    /**
+     * 计数器不存在时用数据库中的值初始化
+     * ARGV 依次为过期时间，之后每个计数器两个值：点赞数、收藏数
+     */
+    private static final DefaultRedisScript<Long> INIT_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do " +
+                    "if redis.call('EXISTS', KEYS[i]) == 0 then " +
+                    "redis.call('HSET', KEYS[i], 'likeCount', ARGV[i * 2], 'favoriteCount', ARGV[i * 2 + 1]) " +
+                    "redis.call('EXPIRE', KEYS[i], ARGV[1]) " +
+                    "end " +
+                    "end " +
+                    "return #KEYS",
+            Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private CacheService cacheService;
+
+    @Resource
+    private PictureCounterStripeManager pictureCounterStripeManager;
+
+    /**
+     * 点赞数加减（在当前事务提交之后执行）
+     *
+     * @param userId 点赞的用户，开启计数分片时用于选择分片
+     */
+    public void incrementLikeCount(long pictureId, long userId, int delta) {
+        incrementLikeCounts(Collections.singletonList(pictureId), userId, delta);
+    }
+
+    /**
+     * 批量点赞数加减，每张图片加减同样的值（在当前事务提交之后执行，一次脚本调用）
+     * 开启计数分片时在当前事务中写入分片表，与点赞记录一起提交
+     */
+    public void incrementLikeCounts(Collection<Long> pictureIds, long userId, int delta) {
+        if (pictureCounterStripeManager.isEnabled()) {
+            pictureCounterStripeManager.increment(pictureIds, userId, delta, 0);
+            return;
+        }
+        incrementAfterCommit(pictureIds, LIKE_COUNT_FIELD, delta);
+    }
+
+    /**
+     * 收藏数加减（在当前事务提交之后执行）
+     *
+     * @param userId 收藏的用户，开启计数分片时用于选择分片
+     */
+    public void incrementFavoriteCount(long pictureId, long userId, int delta) {
+        incrementFavoriteCounts(Collections.singletonList(pictureId), userId, delta);
+    }
+
+    /**
+     * 批量收藏数加减，每张图片加减同样的值（在当前事务提交之后执行，一次脚本调用）
+     * 开启计数分片时在当前事务中写入分片表，与收藏记录一起提交
+     */
+    public void incrementFavoriteCounts(Collection<Long> pictureIds, long userId, int delta) {
+        if (pictureCounterStripeManager.isEnabled()) {
+            pictureCounterStripeManager.increment(pictureIds, userId, 0, delta);
+            return;
+        }
+        incrementAfterCommit(pictureIds, FAVORITE_COUNT_FIELD, delta);
+    }
+
+    /**
+     * 事务回滚时点赞、收藏记录不存在，计数也不能变化
+     */
+    private void incrementAfterCommit(Collection<Long> pictureIds, String field, int delta) {
+        if (CollUtil.isEmpty(pictureIds)) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            increment(pictureIds, field, delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                increment(pictureIds, field, delta);
+            }
+        });
+    }
+
+    private void increment(Collection<Long> pictureIds, String field, int delta) {
+        try {
+            List<String> missingPictureIds = executeIncrement(pictureIds, field, delta);
+            if (CollUtil.isNotEmpty(missingPictureIds)) {
+                // 计数器不存在，从数据库读取当前值初始化后重试
+                List<Long> missingIds = missingPictureIds.stream().map(Long::parseLong).collect(Collectors.toList());
+                initCounters(missingIds);
+                executeIncrement(missingIds, field, delta);
+            }
+        } catch (Exception e) {
+            // 点赞、收藏记录已经提交，计数稍后可以按记录数修正，这里只记录日志
+            log.error("更新图片计数失败，pictureIds: {}，field: {}，delta: {}", pictureIds, field, delta, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> executeIncrement(Collection<Long> pictureIds, String field, int delta) {
+        List<String> keys = new ArrayList<>(pictureIds.size() + 1);
+        List<String> args = new ArrayList<>(pictureIds.size() + 3);
+        args.add(field);
+        args.add(String.valueOf(delta));
+        args.add(String.valueOf(COUNTER_EXPIRE_SECONDS));
+        for (Long pictureId : pictureIds) {
+            keys.add(COUNTER_KEY_PREFIX + pictureId);
+            args.add(String.valueOf(pictureId));
+        }
+        keys.add(DIRTY_KEY);
+        return stringRedisTemplate.execute(INCREMENT_SCRIPT, keys, args.toArray());
+    }
+
+    private void initCounters(List<Long> pictureIds) {
+        QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", LIKE_COUNT_FIELD, FAVORITE_COUNT_FIELD).in("id", pictureIds);
+        Map<Long, Picture> pictureMap = pictureMapper.selectList(queryWrapper).stream()
+                .collect(Collectors.toMap(Picture::getId, picture -> picture));
+        List<String> keys = new ArrayList<>(pictureIds.size());
+        List<String> args = new ArrayList<>(pictureIds.size() * 2 + 1);
+        args.add(String.valueOf(COUNTER_EXPIRE_SECONDS));
+        for (Long pictureId : pictureIds) {
+            Picture picture = pictureMap.get(pictureId);
+            keys.add(COUNTER_KEY_PREFIX + pictureId);
+            args.add(String.valueOf(picture == null || picture.getLikeCount() == null ? 0 : picture.getLikeCount()));
+            args.add(String.valueOf(picture == null || picture.getFavoriteCount() == null
+                    ? 0 : picture.getFavoriteCount()));
+        }
+        stringRedisTemplate.execute(INIT_SCRIPT, keys, args.toArray());
+    }
+
+    /**
+     * 用 Redis 中的计数覆盖图片的点赞数和收藏数（一次管道批量读取），没有计数器的图片保持数据库中的值
+     */
+    public void fillCounts(List<PictureVO> pictureVOList) {
+        // 开启计数分片时计数不经过 Redis，直接使用数据库中的值
+        if (CollUtil.isEmpty(pictureVOList) || pictureCounterStripeManager.isEnabled()) {
+            return;
+        }
+        List<Object> results;
+        try {
+            results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (PictureVO pictureVO : pictureVOList) {
+                    connection.hashCommands().hMGet(
+                            (COUNTER_KEY_PREFIX + pictureVO.getId()).getBytes(StandardCharsets.UTF_8),
+                            LIKE_COUNT_FIELD.getBytes(StandardCharsets.UTF_8),
+                            FAVORITE_COUNT_FIELD.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // 读取失败时使用数据库中的值
+            log.error("读取图片计数失败", e);
+            return;
+        }
+        for (int i = 0; i < pictureVOList.size(); i++) {
+            @SuppressWarnings("unchecked")
+            List<String> counts = (List<String>) results.get(i);
+            if (counts == null || counts.get(0) == null) {
+                continue;
+            }
+            PictureVO pictureVO = pictureVOList.get(i);
+            pictureVO.setLikeCount(Integer.parseInt(counts.get(0)));
+            pictureVO.setFavoriteCount(Integer.parseInt(counts.get(1)));
+        }
+    }
+
+    /**
+     * 启动时检查计数方式是否变化
+     * 开启分片：Redis 中未写回的计数先写回数据库；关闭分片：分片中未汇总的增量先汇总到图片表；
+     * 之后删除全部计数器，分片期间数据库中的计数已经变化，保留的计数器会在读取和写回时覆盖数据库中的值
+     */
+    @PostConstruct
+    public void switchMode() {
+        String mode = pictureCounterStripeManager.isEnabled() ? MODE_STRIPE : MODE_REDIS;
+        try {
+            String previousMode = stringRedisTemplate.opsForValue().get(MODE_KEY);
+            // 没有记录时是第一次记录计数方式，之前只使用过 Redis 计数器
+            if (mode.equals(previousMode == null ? MODE_REDIS : previousMode)) {
+                stringRedisTemplate.opsForValue().setIfAbsent(MODE_KEY, mode);
+                return;
+            }
+            String lockToken = cacheService.tryLock(FLUSH_LOCK_KEY, FLUSH_LOCK_TIMEOUT_SECONDS);
+            if (lockToken == null) {
+                // 其他节点正在写回或切换，由下次启动的节点再检查
+                log.warn("图片计数方式切换时未获取到写回锁，{} -> {}", previousMode, mode);
+                return;
+            }
+            try {
+                if (MODE_STRIPE.equals(mode)) {
+                    flushDirty();
+                } else {
+                    pictureCounterStripeManager.foldAll();
+                }
+                clearCounters();
+                stringRedisTemplate.opsForValue().set(MODE_KEY, mode);
+                log.info("图片计数方式已切换，{} -> {}", previousMode, mode);
+            } finally {
+                cacheService.releaseLock(FLUSH_LOCK_KEY, lockToken);
+            }
+        } catch (Exception e) {
+            log.error("图片计数方式切换失败，mode: {}", mode, e);
+        }
+    }
+
+    /**
+     * 删除全部计数器和脏集合（SCAN 分批删除，不阻塞 Redis）
+     */
+    private void clearCounters() {
+        List<String> keys = new ArrayList<>(CLEAR_BATCH_SIZE);
+        ScanOptions scanOptions = ScanOptions.scanOptions().match(COUNTER_KEY_PREFIX + "*").count(CLEAR_BATCH_SIZE).build();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(scanOptions)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                if (MODE_KEY.equals(key)) {
+                    continue;
+                }
+                keys.add(key);
+                if (keys.size() >= CLEAR_BATCH_SIZE) {
+                    stringRedisTemplate.unlink(keys);
+                    keys.clear();
+                }
+            }
+        }
+        if (!keys.isEmpty()) {
+            stringRedisTemplate.unlink(keys);
+        }
+    }
+
+    /**
+     * 定时把变化过的计数批量写回数据库
+     * 写回的是 Redis 中的当前值而不是增量，取出脏标记之后再发生的变化会重新标记，下一轮再写回
+     */
+    @Scheduled(initialDelay = 5_000L, fixedDelay = 5_000L)
+    public void flush() {
+        if (pictureCounterStripeManager.isEnabled()) {
+            return;
+        }
+        String lockToken = cacheService.tryLock(FLUSH_LOCK_KEY, FLUSH_LOCK_TIMEOUT_SECONDS);
+        if (lockToken == null) {
+            return;
+        }
+        try {
+            flushDirty();
+        } catch (Exception e) {
+            log.error("图片计数写回失败", e);
+        } finally {
+            cacheService.releaseLock(FLUSH_LOCK_KEY, lockToken);
+        }
+    }
+
+    private void flushDirty() {
+        List<String> pictureIds;
+        while (CollUtil.isNotEmpty(pictureIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, FLUSH_BATCH_SIZE))) {
+            flushBatch(pictureIds);
+        }
+    }
+
+    private void flushBatch(List<String> pictureIds) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String pictureId : pictureIds) {
+                connection.hashCommands().hMGet(
+                        (COUNTER_KEY_PREFIX + pictureId).getBytes(StandardCharsets.UTF_8),
+                        LIKE_COUNT_FIELD.getBytes(StandardCharsets.UTF_8),
+                        FAVORITE_COUNT_FIELD.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        List<Picture> pictureList = new ArrayList<>(pictureIds.size());
+        for (int i = 0; i < pictureIds.size(); i++) {
+            @SuppressWarnings("unchecked")
+            List<String> counts = (List<String>) results.get(i);
+            if (counts == null || counts.get(0) == null) {
+                // 计数器已经过期，没有需要写回的值
+                continue;
+            }
+            Picture picture = new Picture();
+            picture.setId(Long.parseLong(pictureIds.get(i)));
+            picture.setLikeCount(Integer.parseInt(counts.get(0)));
+            picture.setFavoriteCount(Integer.parseInt(counts.get(1)));
+            pictureList.add(picture);
+        }
+        if (pictureList.isEmpty()) {
+            return;
+        }
+        try {
+            pictureMapper.batchUpdateCounts(pictureList);
+        } catch (Exception e) {
+            // 写回失败，重新标记，下一轮再写回
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, pictureIds.toArray(new String[0]));
+            throw e;
+        }
+    }
+}
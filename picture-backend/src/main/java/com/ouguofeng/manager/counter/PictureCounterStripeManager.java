@@ -0,0 +1,154 @@
+package com.ouguofeng.manager.counter;
+
+import cn.hutool.core.collection.CollUtil;
+import com.ouguofeng.mapper.PictureCounterStripeMapper;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.model.entity.Picture;
+import com.ouguofeng.model.entity.PictureCounterStripe;
+import com.ouguofeng.service.CacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 图片计数分片（可选的计数存储，picture.counter.stripe.enabled 开启）
+ * 每张图片的计数增量分散到多行，按用户 id 的哈希选择分片，同一张热门图片的并发点赞不再争用同一行锁；
+ * 增量直接写入数据库，调用方在写入点赞、收藏记录的同一事务中调用（组提交管道的写入事务、批量操作的事务），
+ * 记录和计数一起提交或回滚，Redis 不可用时也不会丢失计数
+ * 定时任务把分片增量汇总到 picture 表的点赞数和收藏数，读取时仍然使用图片表中的冗余字段
+ */
+@Slf4j
+@Component
+public class PictureCounterStripeManager {
+
+    /**
+     * 每批汇总的图片数量
+     */
+    private static final int FOLD_BATCH_SIZE = 500;
+
+    /**
+     * 汇总锁，多个节点同时汇总时会互相等待分片行锁
+     */
+    private static final String FOLD_LOCK_KEY = "picture:counter:fold";
+
+    private static final long FOLD_LOCK_TIMEOUT_SECONDS = 60;
+
+    @Value("${picture.counter.stripe.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 每张图片的分片数，修改后同一用户的增量可能落到不同分片，不影响汇总结果
+     */
+    @Value("${picture.counter.stripe.count:16}")
+    private int stripeCount;
+
+    @Resource
+    private PictureCounterStripeMapper pictureCounterStripeMapper;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private CacheService cacheService;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 在用户对应的分片上累加增量（一条多行插入，参与当前事务，需要在写入点赞、收藏记录的事务中调用）
+     */
+    public void increment(Collection<Long> pictureIds, long userId, int likeDelta, int favoriteDelta) {
+        if (CollUtil.isEmpty(pictureIds)) {
+            return;
+        }
+        int stripe = stripeOf(userId);
+        List<PictureCounterStripe> stripeList = new ArrayList<>(pictureIds.size());
+        // 按图片 id 排序写入，避免并发的批量写入以不同顺序加锁导致死锁
+        pictureIds.stream().sorted().distinct().forEach(pictureId -> {
+            PictureCounterStripe pictureCounterStripe = new PictureCounterStripe();
+            pictureCounterStripe.setPictureId(pictureId);
+            pictureCounterStripe.setStripe(stripe);
+            pictureCounterStripe.setLikeCount(likeDelta);
+            pictureCounterStripe.setFavoriteCount(favoriteDelta);
+            stripeList.add(pictureCounterStripe);
+        });
+        pictureCounterStripeMapper.batchIncrement(stripeList);
+    }
+
+    /**
+     * 雪花 id 的低位是序列号，大多为 0，先乘以黄金分割常数打散再取高位
+     */
+    private int stripeOf(long userId) {
+        return Math.floorMod((int) ((userId * 0x9E3779B97F4A7C15L) >>> 32), stripeCount);
+    }
+
+    /**
+     * 定时把分片增量汇总到图片表
+     */
+    @Scheduled(initialDelay = 5_000L, fixedDelay = 5_000L)
+    public void fold() {
+        if (!enabled) {
+            return;
+        }
+        String lockToken = cacheService.tryLock(FOLD_LOCK_KEY, FOLD_LOCK_TIMEOUT_SECONDS);
+        if (lockToken == null) {
+            return;
+        }
+        try {
+            foldAll();
+        } catch (Exception e) {
+            log.error("图片计数分片汇总失败", e);
+        } finally {
+            cacheService.releaseLock(FOLD_LOCK_KEY, lockToken);
+        }
+    }
+
+    /**
+     * 汇总全部分片（关闭分片后切换计数方式时也会调用），每批在一个事务中完成，多个节点同时汇总时每行只汇总一次
+     */
+    public void foldAll() {
+        List<Long> pictureIds;
+        while (CollUtil.isNotEmpty(pictureIds = pictureCounterStripeMapper.selectPictureIds(FOLD_BATCH_SIZE))) {
+            foldBatch(pictureIds);
+        }
+    }
+
+    /**
+     * 在一个事务中锁定分片、累加到图片表并删除分片，汇总期间的新增量等待行锁，提交后写入新的分片行
+     */
+    private void foldBatch(List<Long> pictureIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<PictureCounterStripe> stripeList = pictureCounterStripeMapper.selectByPictureIdsForUpdate(pictureIds);
+            if (stripeList.isEmpty()) {
+                return;
+            }
+            Map<Long, Picture> pictureMap = new LinkedHashMap<>();
+            for (PictureCounterStripe pictureCounterStripe : stripeList) {
+                Picture picture = pictureMap.computeIfAbsent(pictureCounterStripe.getPictureId(), id -> {
+                    Picture newPicture = new Picture();
+                    newPicture.setId(id);
+                    newPicture.setLikeCount(0);
+                    newPicture.setFavoriteCount(0);
+                    return newPicture;
+                });
+                picture.setLikeCount(picture.getLikeCount() + pictureCounterStripe.getLikeCount());
+                picture.setFavoriteCount(picture.getFavoriteCount() + pictureCounterStripe.getFavoriteCount());
+            }
+            pictureMapper.batchAddCounts(new ArrayList<>(pictureMap.values()));
+            pictureCounterStripeMapper.deleteByPictureIds(pictureIds);
+        });
+    }
+}
@@ -0,0 +1,338 @@
+package com.ouguofeng.manager.counter;
+
+import cn.hutool.core.collection.CollUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.ouguofeng.mapper.UserFollowMapper;
+import com.ouguofeng.mapper.UserMapper;
+import com.ouguofeng.model.entity.User;
+import com.ouguofeng.model.entity.UserFollow;
+import com.ouguofeng.model.vo.UserVO;
+import com.ouguofeng.service.CacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 用户粉丝数和关注数
+ * 计数保存在用户表中，关注、取消关注时与关注记录在同一事务中批量加减；
+ * Redis 中按用户缓存一份，读取缓存的图片封装类时用它覆盖作者的计数，计数变化后删除缓存
+ * 定时任务按关注记录校正计数，修正异常中断等原因造成的偏差
+ */
+@Slf4j
+@Component
+public class UserFollowCountManager {
+
+    /**
+     * 缓存键前缀，每个用户一个 Hash，字段为粉丝数和关注数
+     */
+    private static final String COUNT_KEY_PREFIX = "user:follow:count:";
+
+    private static final String FOLLOWER_COUNT_FIELD = "followerCount";
+
+    private static final String FOLLOWING_COUNT_FIELD = "followingCount";
+
+    /**
+     * 缓存的过期时间（秒）
+     */
+    private static final long COUNT_EXPIRE_SECONDS = 600L;
+
+    /**
+     * 每批校正的用户数量
+     */
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    /**
+     * 校正锁，只允许一个节点执行
+     */
+    private static final String RECONCILE_LOCK_KEY = "user:follow:count:reconcile";
+
+    private static final long RECONCILE_LOCK_TIMEOUT_SECONDS = 1800;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private UserFollowMapper userFollowMapper;
+
+    @Resource
+    private CacheService cacheService;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 批量加减粉丝数和关注数（一条 UPDATE，需要在写入关注记录的事务中调用），提交之后删除缓存
+     *
+     * @param followerDeltas  用户 id 到粉丝数增量
+     * @param followingDeltas 用户 id 到关注数增量
+     */
+    public void addCounts(Map<Long, Integer> followerDeltas, Map<Long, Integer> followingDeltas) {
+        Map<Long, User> userMap = new LinkedHashMap<>();
+        followerDeltas.forEach((userId, delta) -> {
+            if (delta != 0) {
+                userMap.computeIfAbsent(userId, this::newCountUser).setFollowerCount(delta);
+            }
+        });
+        followingDeltas.forEach((userId, delta) -> {
+            if (delta != 0) {
+                userMap.computeIfAbsent(userId, this::newCountUser).setFollowingCount(delta);
+            }
+        });
+        if (userMap.isEmpty()) {
+            return;
+        }
+        userMapper.batchAddFollowCounts(new ArrayList<>(userMap.values()));
+        evictAfterCommit(userMap.keySet());
+    }
+
+    private User newCountUser(Long userId) {
+        User user = new User();
+        user.setId(userId);
+        user.setFollowerCount(0);
+        user.setFollowingCount(0);
+        return user;
+    }
+
+    /**
+     * 事务回滚时计数没有变化，不需要删除缓存
+     */
+    private void evictAfterCommit(Collection<Long> userIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(userIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(userIds);
+            }
+        });
+    }
+
+    private void evict(Collection<Long> userIds) {
+        try {
+            stringRedisTemplate.delete(userIds.stream()
+                    .map(userId -> COUNT_KEY_PREFIX + userId)
+                    .collect(Collectors.toList()));
+        } catch (Exception e) {
+            // 缓存很快过期，这里只记录日志
+            log.error("删除用户关注计数缓存失败，userIds: {}", userIds, e);
+        }
+    }
+
+    /**
+     * 用缓存中的计数覆盖用户的粉丝数和关注数（一次管道批量读取），未命中的用户一次查询数据库并写入缓存
+     */
+    public void fillCounts(Collection<UserVO> userVOList) {
+        if (CollUtil.isEmpty(userVOList)) {
+            return;
+        }
+        Map<Long, List<UserVO>> userIdUserVOMap = userVOList.stream()
+                .filter(userVO -> userVO.getId() != null)
+                .collect(Collectors.groupingBy(UserVO::getId, LinkedHashMap::new, Collectors.toList()));
+        if (userIdUserVOMap.isEmpty()) {
+            return;
+        }
+        List<Long> userIds = new ArrayList<>(userIdUserVOMap.keySet());
+        List<Long> missingUserIds = new ArrayList<>();
+        try {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long userId : userIds) {
+                    connection.hashCommands().hMGet(
+                            (COUNT_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8),
+                            FOLLOWER_COUNT_FIELD.getBytes(StandardCharsets.UTF_8),
+                            FOLLOWING_COUNT_FIELD.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            for (int i = 0; i < userIds.size(); i++) {
+                @SuppressWarnings("unchecked")
+                List<String> counts = (List<String>) results.get(i);
+                if (counts == null || counts.get(0) == null || counts.get(1) == null) {
+                    missingUserIds.add(userIds.get(i));
+                    continue;
+                }
+                setCounts(userIdUserVOMap.get(userIds.get(i)),
+                        Integer.parseInt(counts.get(0)), Integer.parseInt(counts.get(1)));
+            }
+        } catch (Exception e) {
+            // 读取缓存失败时全部从数据库读取
+            log.error("读取用户关注计数缓存失败", e);
+            missingUserIds = userIds;
+        }
+        if (missingUserIds.isEmpty()) {
+            return;
+        }
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", FOLLOWER_COUNT_FIELD, FOLLOWING_COUNT_FIELD).in("id", missingUserIds);
+        List<User> userList = userMapper.selectList(queryWrapper);
+        for (User user : userList) {
+            setCounts(userIdUserVOMap.get(user.getId()), nullToZero(user.getFollowerCount()),
+                    nullToZero(user.getFollowingCount()));
+        }
+        cacheCounts(userList);
+    }
+
+    private void setCounts(List<UserVO> userVOList, int followerCount, int followingCount) {
+        for (UserVO userVO : userVOList) {
+            userVO.setFollowerCount(followerCount);
+            userVO.setFollowingCount(followingCount);
+        }
+    }
+
+    private void cacheCounts(List<User> userList) {
+        if (userList.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (User user : userList) {
+                    byte[] key = (COUNT_KEY_PREFIX + user.getId()).getBytes(StandardCharsets.UTF_8);
+                    Map<byte[], byte[]> hash = new HashMap<>();
+                    hash.put(FOLLOWER_COUNT_FIELD.getBytes(StandardCharsets.UTF_8),
+                            String.valueOf(nullToZero(user.getFollowerCount())).getBytes(StandardCharsets.UTF_8));
+                    hash.put(FOLLOWING_COUNT_FIELD.getBytes(StandardCharsets.UTF_8),
+                            String.valueOf(nullToZero(user.getFollowingCount())).getBytes(StandardCharsets.UTF_8));
+                    connection.hashCommands().hMSet(key, hash);
+                    connection.keyCommands().expire(key, COUNT_EXPIRE_SECONDS);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("写入用户关注计数缓存失败", e);
+        }
+    }
+
+    private static int nullToZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * 定时按关注记录校正粉丝数和关注数
+     * 按 id 分批遍历用户，先不加锁比较；有偏差的用户在事务中锁定用户行后重新统计再写入，
+     * 与关注、取消关注更新计数的事务互斥，不会覆盖并发的变化
+     */
+    @Scheduled(initialDelay = 60_000L, fixedDelay = 3_600_000L)
+    public void reconcile() {
+        String lockToken = cacheService.tryLock(RECONCILE_LOCK_KEY, RECONCILE_LOCK_TIMEOUT_SECONDS);
+        if (lockToken == null) {
+            return;
+        }
+        try {
+            long lastUserId = 0;
+            int fixedCount = 0;
+            while (true) {
+                QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+                queryWrapper.select("id", FOLLOWER_COUNT_FIELD, FOLLOWING_COUNT_FIELD)
+                        .gt("id", lastUserId)
+                        .orderByAsc("id")
+                        .last("limit " + RECONCILE_BATCH_SIZE);
+                List<User> userList = userMapper.selectList(queryWrapper);
+                if (userList.isEmpty()) {
+                    break;
+                }
+                lastUserId = userList.get(userList.size() - 1).getId();
+                List<Long> driftedUserIds = listDriftedUserIds(userList);
+                if (!driftedUserIds.isEmpty()) {
+                    fixedCount += reconcileBatch(driftedUserIds);
+                }
+                if (userList.size() < RECONCILE_BATCH_SIZE) {
+                    break;
+                }
+            }
+            if (fixedCount > 0) {
+                log.warn("用户关注计数校正完成，修正用户数: {}", fixedCount);
+            }
+        } catch (Exception e) {
+            log.error("用户关注计数校正失败", e);
+        } finally {
+            cacheService.releaseLock(RECONCILE_LOCK_KEY, lockToken);
+        }
+    }
+
+    private List<Long> listDriftedUserIds(List<User> userList) {
+        List<Long> userIds = userList.stream().map(User::getId).collect(Collectors.toList());
+        Map<Long, Integer> followerCountMap = countFollows("followeeId", userIds);
+        Map<Long, Integer> followingCountMap = countFollows("followerId", userIds);
+        return userList.stream()
+                .filter(user -> nullToZero(user.getFollowerCount()) != followerCountMap.getOrDefault(user.getId(), 0)
+                        || nullToZero(user.getFollowingCount()) != followingCountMap.getOrDefault(user.getId(), 0))
+                .map(User::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 锁定用户行后重新统计并写入，返回实际修正的用户数
+     */
+    private int reconcileBatch(List<Long> userIds) {
+        Set<Long> fixedUserIds = new HashSet<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id", FOLLOWER_COUNT_FIELD, FOLLOWING_COUNT_FIELD)
+                    .in("id", userIds)
+                    .orderByAsc("id")
+                    .last("for update");
+            List<User> userList = userMapper.selectList(queryWrapper);
+            if (userList.isEmpty()) {
+                return;
+            }
+            Map<Long, Integer> followerCountMap = countFollows("followeeId", userIds);
+            Map<Long, Integer> followingCountMap = countFollows("followerId", userIds);
+            List<User> updateList = new ArrayList<>();
+            for (User user : userList) {
+                int followerCount = followerCountMap.getOrDefault(user.getId(), 0);
+                int followingCount = followingCountMap.getOrDefault(user.getId(), 0);
+                if (nullToZero(user.getFollowerCount()) == followerCount
+                        && nullToZero(user.getFollowingCount()) == followingCount) {
+                    continue;
+                }
+                User updateUser = new User();
+                updateUser.setId(user.getId());
+                updateUser.setFollowerCount(followerCount);
+                updateUser.setFollowingCount(followingCount);
+                updateList.add(updateUser);
+                fixedUserIds.add(user.getId());
+            }
+            if (!updateList.isEmpty()) {
+                userMapper.batchUpdateFollowCounts(updateList);
+                evictAfterCommit(new ArrayList<>(fixedUserIds));
+            }
+        });
+        return fixedUserIds.size();
+    }
+
+    /**
+     * 按指定列统计关注记录数（followeeId 为粉丝数，followerId 为关注数）
+     */
+    private Map<Long, Integer> countFollows(String column, Collection<Long> userIds) {
+        QueryWrapper<UserFollow> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select(column, "count(*) as total")
+                .in(column, userIds)
+                .groupBy(column);
+        Map<Long, Integer> countMap = new HashMap<>();
+        for (Map<String, Object> row : userFollowMapper.selectMaps(queryWrapper)) {
+            countMap.put(((Number) row.get(column)).longValue(), ((Number) row.get("total")).intValue());
+        }
+        return countMap;
+    }
+}
@@ -0,0 +1,357 @@
+package com.ouguofeng.manager.feed;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.mapper.UserFollowMapper;
+import com.ouguofeng.mapper.UserMapper;
+import com.ouguofeng.model.entity.User;
+import com.ouguofeng.model.entity.UserFollow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 关注动态（推拉结合）
+ * 普通作者的新图片在公开时推送到每个粉丝的收件箱（Redis 列表，只保留最新的若干条）；
+ * 粉丝数达到阈值的大 V 只写入自己的发件箱，粉丝读取时再合并，避免一次推送上百万个收件箱
+ * 读取时一次管道读取收件箱和关注的大 V 发件箱，按图片 id（雪花 id，按创建时间递增）倒序合并，
+ * 不需要在数据库中按关注的几千个作者 id 做 IN 查询；收件箱不存在（过期或关注关系变化）时才从数据库重建一次
+ */
+@Slf4j
+@Component
+public class PictureFeedManager {
+
+    /**
+     * 收件箱键前缀，每个用户一个列表，元素为图片 id，最新的在左侧
+     */
+    private static final String INBOX_KEY_PREFIX = "feed:inbox:";
+
+    /**
+     * 发件箱键前缀，每个作者一个列表
+     */
+    private static final String OUTBOX_KEY_PREFIX = "feed:outbox:";
+
+    /**
+     * 用户关注的大 V id（逗号分隔，可以为空字符串）
+     */
+    private static final String FOLLOWING_BIG_KEY_PREFIX = "feed:following:big:";
+
+    /**
+     * 重建后追加在收件箱末尾的占位元素，区分“没有动态”和“收件箱不存在”
+     */
+    private static final String EMPTY_MARKER = "0";
+
+    /**
+     * 每批推送的粉丝数量
+     */
+    private static final int FAN_OUT_BATCH_SIZE = 1000;
+
+    /**
+     * 粉丝数达到该值的作者改为读取时拉取
+     */
+    @Value("${picture.feed.fan-out-threshold:5000}")
+    private int fanOutThreshold;
+
+    /**
+     * 收件箱和发件箱保留的图片数量
+     */
+    @Value("${picture.feed.max-size:500}")
+    private int maxSize;
+
+    /**
+     * 收件箱的过期时间（秒），每次读取时续期，不活跃用户的收件箱自动释放
+     */
+    @Value("${picture.feed.inbox-expire-seconds:604800}")
+    private long inboxExpireSeconds;
+
+    /**
+     * 关注的大 V 列表的缓存时间（秒）
+     */
+    @Value("${picture.feed.following-big-expire-seconds:600}")
+    private long followingBigExpireSeconds;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private UserFollowMapper userFollowMapper;
+
+    /**
+     * 推送线程，单线程保证同一张图片的推送和撤回按顺序执行
+     */
+    private final ExecutorService fanOutExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "picture-feed-fan-out");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 大 V id，定时从数据库刷新
+     */
+    private volatile Set<Long> bigAuthorIds = Collections.emptySet();
+
+    /**
+     * 图片进入公共图库时推送给作者的粉丝（在当前事务提交之后异步执行）
+     */
+    public void publish(long pictureId, long authorId) {
+        submitAfterCommit(() -> fanOut(pictureId, authorId, true));
+    }
+
+    /**
+     * 图片删除或不再公开时从收件箱和发件箱中撤回（在当前事务提交之后异步执行）
+     */
+    public void retract(long pictureId, long authorId) {
+        submitAfterCommit(() -> fanOut(pictureId, authorId, false));
+    }
+
+    private void submitAfterCommit(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            fanOutExecutor.execute(task);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                fanOutExecutor.execute(task);
+            }
+        });
+    }
+
+    private void fanOut(long pictureId, long authorId, boolean publish) {
+        try {
+            String member = String.valueOf(pictureId);
+            updateList(Collections.singletonList(OUTBOX_KEY_PREFIX + authorId), member, publish, true);
+            // 大 V 的粉丝读取时从发件箱拉取；撤回时仍然清理所有收件箱，作者可能是成为大 V 之前推送的
+            if (publish && bigAuthorIds.contains(authorId)) {
+                return;
+            }
+            long lastId = 0;
+            while (true) {
+                QueryWrapper<UserFollow> queryWrapper = new QueryWrapper<>();
+                queryWrapper.select("id", "followerId")
+                        .eq("followeeId", authorId)
+                        .gt("id", lastId)
+                        .orderByAsc("id")
+                        .last("limit " + FAN_OUT_BATCH_SIZE);
+                List<UserFollow> userFollowList = userFollowMapper.selectList(queryWrapper);
+                if (userFollowList.isEmpty()) {
+                    break;
+                }
+                lastId = userFollowList.get(userFollowList.size() - 1).getId();
+                updateList(userFollowList.stream()
+                        .map(userFollow -> INBOX_KEY_PREFIX + userFollow.getFollowerId())
+                        .collect(Collectors.toList()), member, publish, false);
+                if (userFollowList.size() < FAN_OUT_BATCH_SIZE) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            // 收件箱过期或关注关系变化后会从数据库重建，这里只记录日志
+            log.error("关注动态推送失败，pictureId: {}，authorId: {}，publish: {}", pictureId, authorId, publish, e);
+        }
+    }
+
+    /**
+     * 一次管道更新多个列表：推送时写入左侧并截断，撤回时删除
+     * 收件箱只写入已经存在的（LPUSHX），不存在的收件箱读取时会完整重建，不能只含部分图片
+     */
+    private void updateList(List<String> keys, String member, boolean publish, boolean createIfAbsent) {
+        byte[] value = member.getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+                if (!publish) {
+                    connection.listCommands().lRem(rawKey, 0, value);
+                    continue;
+                }
+                if (createIfAbsent) {
+                    connection.listCommands().lPush(rawKey, value);
+                } else {
+                    connection.listCommands().lPushX(rawKey, value);
+                }
+                connection.listCommands().lTrim(rawKey, 0, maxSize - 1);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 读取关注动态的一页图片 id（按 id 倒序），图片可能已经不可见，由调用方过滤
+     *
+     * @param userId        当前用户 id
+     * @param lastPictureId 上一页最后一张图片的 id，第一页为 null
+     * @param size          每页数量
+     */
+    public List<Long> listFeedPictureIds(long userId, Long lastPictureId, int size) {
+        String inboxKey = INBOX_KEY_PREFIX + userId;
+        String followingBigKey = FOLLOWING_BIG_KEY_PREFIX + userId;
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] rawInboxKey = inboxKey.getBytes(StandardCharsets.UTF_8);
+            connection.listCommands().lRange(rawInboxKey, 0, -1);
+            connection.stringCommands().get(followingBigKey.getBytes(StandardCharsets.UTF_8));
+            connection.keyCommands().expire(rawInboxKey, inboxExpireSeconds);
+            return null;
+        });
+        @SuppressWarnings("unchecked")
+        List<String> inbox = (List<String>) results.get(0);
+        if (CollUtil.isEmpty(inbox)) {
+            inbox = rebuildInbox(userId);
+        }
+        String followingBig = (String) results.get(1);
+        List<Long> followingBigIds = followingBig == null ? loadFollowingBigIds(userId) : parseIds(followingBig);
+        // 合并收件箱和大 V 发件箱，去重后按 id 倒序
+        TreeSet<Long> pictureIds = new TreeSet<>(Collections.reverseOrder());
+        inbox.forEach(member -> pictureIds.add(Long.parseLong(member)));
+        if (!followingBigIds.isEmpty()) {
+            List<Object> outboxes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long authorId : followingBigIds) {
+                    connection.listCommands().lRange(
+                            (OUTBOX_KEY_PREFIX + authorId).getBytes(StandardCharsets.UTF_8), 0, maxSize - 1);
+                }
+                return null;
+            });
+            for (Object outbox : outboxes) {
+                @SuppressWarnings("unchecked")
+                List<String> members = (List<String>) outbox;
+                if (members != null) {
+                    members.forEach(member -> pictureIds.add(Long.parseLong(member)));
+                }
+            }
+        }
+        pictureIds.remove(Long.parseLong(EMPTY_MARKER));
+        Set<Long> pageIds = lastPictureId == null ? pictureIds : pictureIds.tailSet(lastPictureId, false);
+        return pageIds.stream().limit(size).collect(Collectors.toList());
+    }
+
+    /**
+     * 从数据库重建收件箱（包含大 V 的图片，合并时去重），末尾追加占位元素
+     */
+    private List<String> rebuildInbox(long userId) {
+        List<String> members = pictureMapper.selectFeedPictureIds(userId, maxSize).stream()
+                .map(String::valueOf)
+                .collect(Collectors.toCollection(ArrayList::new));
+        members.add(EMPTY_MARKER);
+        byte[] rawKey = (INBOX_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+        byte[][] values = members.stream()
+                .map(member -> member.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.keyCommands().del(rawKey);
+                connection.listCommands().rPush(rawKey, values);
+                connection.keyCommands().expire(rawKey, inboxExpireSeconds);
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("写入关注动态收件箱失败，userId: {}", userId, e);
+        }
+        return members;
+    }
+
+    /**
+     * 查询用户关注的大 V 并缓存，大 V 数量很少，按唯一索引查询
+     */
+    private List<Long> loadFollowingBigIds(long userId) {
+        Set<Long> authorIds = bigAuthorIds;
+        List<Long> followingBigIds = new ArrayList<>();
+        if (!authorIds.isEmpty()) {
+            QueryWrapper<UserFollow> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("followeeId")
+                    .eq("followerId", userId)
+                    .in("followeeId", authorIds);
+            userFollowMapper.selectObjs(queryWrapper)
+                    .forEach(id -> followingBigIds.add(((Number) id).longValue()));
+        }
+        stringRedisTemplate.opsForValue().set(FOLLOWING_BIG_KEY_PREFIX + userId,
+                followingBigIds.stream().map(String::valueOf).collect(Collectors.joining(",")),
+                followingBigExpireSeconds, TimeUnit.SECONDS);
+        return followingBigIds;
+    }
+
+    private List<Long> parseIds(String value) {
+        if (StrUtil.isBlank(value)) {
+            return Collections.emptyList();
+        }
+        return StrUtil.split(value, ',').stream().map(Long::parseLong).collect(Collectors.toList());
+    }
+
+    /**
+     * 关注或取消关注后删除收件箱和关注的大 V 列表，下次读取时重建（在当前事务提交之后执行，避免提交前按旧数据重建）
+     */
+    public void evict(long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteInbox(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteInbox(userId);
+            }
+        });
+    }
+
+    private void deleteInbox(long userId) {
+        try {
+            stringRedisTemplate.delete(List.of(INBOX_KEY_PREFIX + userId, FOLLOWING_BIG_KEY_PREFIX + userId));
+        } catch (Exception e) {
+            log.error("删除关注动态收件箱失败，userId: {}", userId, e);
+        }
+    }
+
+    /**
+     * 定时刷新大 V 列表
+     */
+    @Scheduled(initialDelay = 0L, fixedDelay = 60_000L)
+    public void refreshBigAuthors() {
+        try {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id").ge("followerCount", fanOutThreshold);
+            bigAuthorIds = userMapper.selectObjs(queryWrapper).stream()
+                    .map(id -> ((Number) id).longValue())
+                    .collect(Collectors.toCollection(HashSet::new));
+        } catch (Exception e) {
+            log.error("刷新大 V 列表失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOutExecutor.shutdown();
+        try {
+            if (!fanOutExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                fanOutExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            fanOutExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
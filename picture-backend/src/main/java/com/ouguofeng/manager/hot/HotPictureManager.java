@@ -0,0 +1,391 @@
+package com.ouguofeng.manager.hot;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.map.MapUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.model.entity.Picture;
+import com.ouguofeng.model.enums.PictureReviewStatusEnum;
+import com.ouguofeng.service.CacheService;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 公共图库热门排行（按时间衰减的热度）
+ * 浏览、点赞、收藏事件先在本地按图片合并，定时批量写入 Redis 有序集合，热门图片的大量事件只产生一次 ZINCRBY；
+ * 热度使用前向衰减：事件权重乘以 2^((事件时间 - 基准时间) / 半衰期) 后累加，旧事件的相对权重随时间减半，
+ * 分数只需要累加、不需要定时重算，排名读取是 O(log n) 的 ZREVRANGE；分数增长到一定倍数后整体缩小并推进基准时间
+ */
+@Slf4j
+@Component
+public class HotPictureManager {
+
+    /**
+     * 热度有序集合，成员为图片 id
+     */
+    private static final String HOT_KEY = "picture:hot";
+
+    /**
+     * 衰减基准时间（秒）
+     */
+    private static final String EPOCH_KEY = "picture:hot:epoch";
+
+    /**
+     * 维护锁，缩小分数和推进基准时间需要同时完成
+     */
+    private static final String MAINTAIN_LOCK_KEY = "picture:hot:maintain";
+
+    private static final long MAINTAIN_LOCK_TIMEOUT_SECONDS = 60;
+
+    /**
+     * 距基准时间超过多少个半衰期时整体缩小分数，倍数保持在 double 精度范围内
+     */
+    private static final int REBASE_HALF_LIVES = 32;
+
+    /**
+     * 每批写入的图片数量
+     */
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * 浏览去重最多记录的条数，超出时淘汰最早的记录
+     */
+    private static final long VIEW_DEDUP_MAX_SIZE = 100_000L;
+
+    /**
+     * 累加事件分数，基准时间不存在时以当前时间为基准
+     * KEYS 为热度集合和基准时间；ARGV 依次为当前时间、半衰期（秒），之后每两个值为图片 id 和权重
+     */
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "local epoch = tonumber(redis.call('GET', KEYS[2])) " +
+                    "if not epoch then epoch = tonumber(ARGV[1]) redis.call('SET', KEYS[2], ARGV[1]) end " +
+                    "local factor = 2 ^ ((tonumber(ARGV[1]) - epoch) / tonumber(ARGV[2])) " +
+                    "for i = 3, #ARGV, 2 do " +
+                    "redis.call('ZINCRBY', KEYS[1], tonumber(ARGV[i + 1]) * factor, ARGV[i]) " +
+                    "end " +
+                    "return #ARGV / 2 - 1",
+            Long.class);
+
+    /**
+     * 分数整体乘以 ARGV[2] 并把基准时间设为 ARGV[1]，在一个脚本中完成，累加不会用到不一致的基准
+     */
+    private static final DefaultRedisScript<Long> REBASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+                    "redis.call('ZUNIONSTORE', KEYS[1], 1, KEYS[1], 'WEIGHTS', ARGV[2]) " +
+                    "end " +
+                    "redis.call('SET', KEYS[2], ARGV[1]) " +
+                    "return 1",
+            Long.class);
+
+    /**
+     * 半衰期（秒）
+     */
+    @Value("${picture.hot.half-life-seconds:21600}")
+    private long halfLifeSeconds;
+
+    /**
+     * 保留的图片数量，超出的低分图片定时删除
+     */
+    @Value("${picture.hot.max-size:10000}")
+    private int maxSize;
+
+    /**
+     * 浏览去重时间（秒）
+     */
+    @Value("${picture.hot.view-dedup-seconds:600}")
+    private long viewDedupSeconds;
+
+    @Value("${picture.hot.view-weight:1}")
+    private double viewWeight;
+
+    @Value("${picture.hot.like-weight:3}")
+    private double likeWeight;
+
+    @Value("${picture.hot.favorite-weight:5}")
+    private double favoriteWeight;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private CacheService cacheService;
+
+    /**
+     * 本地合并的事件权重，定时写入 Redis 后清空
+     */
+    private final Map<Long, DoubleAdder> pendingScores = new ConcurrentHashMap<>();
+
+    /**
+     * 最近的浏览（图片 id 和访问者），去重时间内的重复浏览不计入热度，刷新页面不能刷热度
+     */
+    private Cache<String, Boolean> recentViews;
+
+    @PostConstruct
+    public void init() {
+        recentViews = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(viewDedupSeconds))
+                .maximumSize(VIEW_DEDUP_MAX_SIZE)
+                .build();
+    }
+
+    /**
+     * 热门排行的一页
+     */
+    @Data
+    public static class HotPage {
+
+        /**
+         * 当前页的图片 id，按热度降序
+         */
+        private List<Long> ids = new ArrayList<>();
+
+        /**
+         * 排行中的图片总数
+         */
+        private long total;
+    }
+
+    /**
+     * 浏览图片，同一访问者在去重时间内重复浏览同一张图片只计一次
+     *
+     * @param viewer 访问者标识（登录用户 id 或 IP）
+     */
+    public void recordView(long pictureId, String viewer) {
+        if (recentViews.asMap().putIfAbsent(pictureId + ":" + viewer, Boolean.TRUE) == null) {
+            record(pictureId, viewWeight);
+        }
+    }
+
+    /**
+     * 点赞（在当前事务提交之后计入）
+     */
+    public void recordLike(Collection<Long> pictureIds) {
+        recordAfterCommit(pictureIds, likeWeight);
+    }
+
+    /**
+     * 取消点赞，撤销点赞当时计入的热度（在当前事务提交之后计入）
+     *
+     * @param likeTimeMap 图片 id 到点赞时间
+     */
+    public void revokeLike(Map<Long, Date> likeTimeMap) {
+        revokeAfterCommit(likeTimeMap, likeWeight);
+    }
+
+    /**
+     * 收藏（在当前事务提交之后计入）
+     */
+    public void recordFavorite(Collection<Long> pictureIds) {
+        recordAfterCommit(pictureIds, favoriteWeight);
+    }
+
+    /**
+     * 取消收藏，撤销收藏当时计入的热度（在当前事务提交之后计入）
+     *
+     * @param favoriteTimeMap 图片 id 到收藏时间
+     */
+    public void revokeFavorite(Map<Long, Date> favoriteTimeMap) {
+        revokeAfterCommit(favoriteTimeMap, favoriteWeight);
+    }
+
+    /**
+     * 事务回滚时点赞、收藏记录没有变化，热度也不能变化
+     */
+    private void recordAfterCommit(Collection<Long> pictureIds, double weight) {
+        if (CollUtil.isEmpty(pictureIds)) {
+            return;
+        }
+        runAfterCommit(() -> pictureIds.forEach(pictureId -> record(pictureId, weight)));
+    }
+
+    /**
+     * 按前向衰减，当时计入的分数是 weight * 2^((事件时间 - 基准时间) / 半衰期)，
+     * 现在计入的分数会乘以 2^((现在 - 基准时间) / 半衰期)，撤销时按事件时间折算，减去的正好是当时计入的分数；
+     * 直接减去现在的权重会比当时计入的多，分数变为负数
+     */
+    private void revokeAfterCommit(Map<Long, Date> eventTimeMap, double weight) {
+        if (MapUtil.isEmpty(eventTimeMap)) {
+            return;
+        }
+        runAfterCommit(() -> {
+            long now = System.currentTimeMillis();
+            eventTimeMap.forEach((pictureId, eventTime) -> record(pictureId, -weight * decayFactor(eventTime, now)));
+        });
+    }
+
+    /**
+     * 事件相对现在的衰减倍数，时间未知时不衰减
+     */
+    double decayFactor(Date eventTime, long now) {
+        if (eventTime == null || eventTime.getTime() >= now) {
+            return 1;
+        }
+        return Math.pow(2, -(now - eventTime.getTime()) / 1000.0 / halfLifeSeconds);
+    }
+
+    private void runAfterCommit(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+
+    private void record(long pictureId, double weight) {
+        pendingScores.computeIfAbsent(pictureId, id -> new DoubleAdder()).add(weight);
+    }
+
+    /**
+     * 图片被删除或不再公开时移出排行
+     */
+    public void remove(long pictureId) {
+        pendingScores.remove(pictureId);
+        try {
+            stringRedisTemplate.opsForZSet().remove(HOT_KEY, String.valueOf(pictureId));
+        } catch (Exception e) {
+            log.error("移出热门排行失败，pictureId: {}", pictureId, e);
+        }
+    }
+
+    /**
+     * 分页读取热门图片 id（一次管道：ZREVRANGE 和 ZCARD）
+     */
+    @SuppressWarnings("unchecked")
+    public HotPage getHotPage(long current, long size) {
+        long start = (current - 1) * size;
+        long end = start + size - 1;
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] key = HOT_KEY.getBytes(StandardCharsets.UTF_8);
+            connection.zSetCommands().zRevRange(key, start, end);
+            connection.zSetCommands().zCard(key);
+            return null;
+        });
+        HotPage hotPage = new HotPage();
+        Collection<String> members = (Collection<String>) results.get(0);
+        if (members != null) {
+            members.forEach(member -> hotPage.getIds().add(Long.parseLong(member)));
+        }
+        Long total = (Long) results.get(1);
+        hotPage.setTotal(total == null ? 0 : total);
+        return hotPage;
+    }
+
+    /**
+     * 定时把本地合并的事件写入 Redis，只有审核通过的公共图片进入排行（每批一次主键查询过滤）
+     */
+    @Scheduled(initialDelay = 1_000L, fixedDelay = 1_000L)
+    public void flush() {
+        if (pendingScores.isEmpty()) {
+            return;
+        }
+        Map<Long, Double> scores = new HashMap<>();
+        for (Long pictureId : new ArrayList<>(pendingScores.keySet())) {
+            DoubleAdder adder = pendingScores.remove(pictureId);
+            if (adder != null) {
+                double score = adder.sum();
+                if (score != 0) {
+                    scores.put(pictureId, score);
+                }
+            }
+        }
+        if (scores.isEmpty()) {
+            return;
+        }
+        for (List<Long> pictureIds : CollUtil.split(scores.keySet(), FLUSH_BATCH_SIZE)) {
+            try {
+                Set<Long> publicPictureIds = listPublicPictureIds(pictureIds);
+                if (publicPictureIds.isEmpty()) {
+                    continue;
+                }
+                List<String> args = new ArrayList<>(publicPictureIds.size() * 2 + 2);
+                args.add(String.valueOf(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())));
+                args.add(String.valueOf(halfLifeSeconds));
+                for (Long pictureId : publicPictureIds) {
+                    args.add(String.valueOf(pictureId));
+                    args.add(String.valueOf(scores.get(pictureId)));
+                }
+                stringRedisTemplate.execute(INCREMENT_SCRIPT, Arrays.asList(HOT_KEY, EPOCH_KEY), args.toArray());
+            } catch (Exception e) {
+                // 热度只用于排行，丢失一批事件可以接受
+                log.error("写入热门排行失败", e);
+            }
+        }
+    }
+
+    private Set<Long> listPublicPictureIds(Collection<Long> pictureIds) {
+        QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id");
+        queryWrapper.in("id", pictureIds);
+        queryWrapper.isNull("spaceId");
+        queryWrapper.eq("reviewStatus", PictureReviewStatusEnum.PASS.getValue());
+        return pictureMapper.selectObjs(queryWrapper).stream()
+                .map(id -> ((Number) id).longValue())
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    /**
+     * 定时维护：删除不再有热度的图片、只保留前 maxSize 张，基准时间过旧时整体缩小分数
+     */
+    @Scheduled(initialDelay = 60_000L, fixedDelay = 60_000L)
+    public void maintain() {
+        String lockToken = cacheService.tryLock(MAINTAIN_LOCK_KEY, MAINTAIN_LOCK_TIMEOUT_SECONDS);
+        if (lockToken == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForZSet().removeRangeByScore(HOT_KEY, Double.NEGATIVE_INFINITY, 0);
+            stringRedisTemplate.opsForZSet().removeRange(HOT_KEY, 0, -(maxSize + 1L));
+            String epoch = stringRedisTemplate.opsForValue().get(EPOCH_KEY);
+            if (epoch == null) {
+                return;
+            }
+            long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            long halfLives = (now - Long.parseLong(epoch)) / halfLifeSeconds;
+            if (halfLives >= REBASE_HALF_LIVES) {
+                long newEpoch = Long.parseLong(epoch) + halfLives * halfLifeSeconds;
+                stringRedisTemplate.execute(REBASE_SCRIPT, Arrays.asList(HOT_KEY, EPOCH_KEY),
+                        String.valueOf(newEpoch), String.valueOf(Math.pow(2, -halfLives)));
+            }
+        } catch (Exception e) {
+            log.error("维护热门排行失败", e);
+        } finally {
+            cacheService.releaseLock(MAINTAIN_LOCK_KEY, lockToken);
+        }
+    }
+}
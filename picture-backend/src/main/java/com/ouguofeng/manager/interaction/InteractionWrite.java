@@ -0,0 +1,113 @@
+package com.ouguofeng.manager.interaction;
+
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 一次点赞、收藏或关注的写入请求
+ * 结果在包含它的事务提交之后完成：true 表示写入生效，false 表示没有变化（目标不存在、已经存在或本来不存在）
+ */
+@Getter
+public class InteractionWrite {
+
+    /**
+     * 写入类型
+     */
+    public enum Type {
+
+        LIKE(Table.PICTURE_LIKE, true),
+        UNLIKE(Table.PICTURE_LIKE, false),
+        FAVORITE(Table.PICTURE_FAVORITE, true),
+        UNFAVORITE(Table.PICTURE_FAVORITE, false),
+        FOLLOW(Table.USER_FOLLOW, true),
+        UNFOLLOW(Table.USER_FOLLOW, false);
+
+        private final Table table;
+
+        /**
+         * true 为新增记录，false 为删除记录
+         */
+        private final boolean insert;
+
+        Type(Table table, boolean insert) {
+            this.table = table;
+            this.insert = insert;
+        }
+
+        public Table getTable() {
+            return table;
+        }
+
+        public boolean isInsert() {
+            return insert;
+        }
+    }
+
+    /**
+     * 写入的表
+     */
+    public enum Table {
+        PICTURE_LIKE,
+        PICTURE_FAVORITE,
+        USER_FOLLOW
+    }
+
+    private final Type type;
+
+    /**
+     * 目标 id：图片 id 或被关注者 id
+     */
+    private final long targetId;
+
+    /**
+     * 操作的用户 id（关注者 id）
+     */
+    private final long userId;
+
+    /**
+     * 写入生效时在写入事务中调用，用于注册提交之后的计数、集合等更新，可以为 null
+     * 调用方等待超时返回之后事务仍可能提交，这些更新不能放在调用方等待结果之后
+     */
+    private final Consumer<InteractionWrite> onApplied;
+
+    /**
+     * 删除生效时被删除记录的创建时间（点赞、收藏的时间），在写入事务中、回调 onApplied 之前设置
+     */
+    private volatile Date removedCreateTime;
+
+    private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+    /**
+     * 是否已经被写入线程或请求线程取走执行，保证每个写入只执行一次
+     */
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    public InteractionWrite(Type type, long targetId, long userId, Consumer<InteractionWrite> onApplied) {
+        this.type = type;
+        this.targetId = targetId;
+        this.userId = userId;
+        this.onApplied = onApplied;
+    }
+
+    void setRemovedCreateTime(Date removedCreateTime) {
+        this.removedCreateTime = removedCreateTime;
+    }
+
+    /**
+     * 取得执行权，返回 false 表示已经被其他线程取走
+     */
+    boolean claim() {
+        return claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * 同一张表中同一对目标和用户的写入在一个分组内只能出现一次，保证先后顺序
+     */
+    String conflictKey() {
+        return type.getTable().name() + ":" + targetId + ":" + userId;
+    }
+}
@@ -0,0 +1,517 @@
+package com.ouguofeng.manager.interaction;
+
+import cn.hutool.core.collection.CollUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.ouguofeng.exception.BusinessException;
+import com.ouguofeng.exception.ErrorCode;
+import com.ouguofeng.manager.counter.UserFollowCountManager;
+import com.ouguofeng.mapper.PictureFavoriteMapper;
+import com.ouguofeng.mapper.PictureLikeMapper;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.mapper.UserFollowMapper;
+import com.ouguofeng.mapper.UserMapper;
+import com.ouguofeng.model.entity.Picture;
+import com.ouguofeng.model.entity.PictureFavorite;
+import com.ouguofeng.model.entity.PictureLike;
+import com.ouguofeng.model.entity.User;
+import com.ouguofeng.model.entity.UserFollow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 点赞、收藏、关注的组提交写入管道
+ * 请求线程把写入放入有界无锁环形队列后等待结果，单个写入线程每次取出队列中积压的全部写入（不超过上限），
+ * 按表和类型合并为多行 INSERT IGNORE 和按 id 批量 DELETE，在一个事务中执行并提交一次；
+ * 关注、取消关注同时在事务中更新双方的粉丝数和关注数；生效的写入在同一事务中回调调用方，由调用方注册提交之后的计数等 Redis 更新，
+ * 请求线程等待超时返回时这些更新也不会丢失；提交之后才完成每个写入的结果
+ * 写入线程提交时新的请求继续积压，并发越高每次提交合并的写入越多；队列满、写入线程退出或管道关闭时在请求线程中直接执行，
+ * 等待超时且写入还没有被写入线程取出时也改为直接执行；队列为空时写入线程挂起，由新写入唤醒
+ */
+@Slf4j
+@Component
+public class InteractionWritePipeline {
+
+    @Value("${interaction.write-pipeline.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 队列容量（向上取整为 2 的幂）
+     */
+    @Value("${interaction.write-pipeline.capacity:4096}")
+    private int capacity;
+
+    /**
+     * 每次提交最多合并的写入数
+     */
+    @Value("${interaction.write-pipeline.max-batch-size:256}")
+    private int maxBatchSize;
+
+    /**
+     * 请求线程等待写入线程的最长时间（毫秒），超时后在请求线程中直接写入
+     */
+    @Value("${interaction.write-pipeline.timeout-millis:3000}")
+    private long timeoutMillis;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private PictureLikeMapper pictureLikeMapper;
+
+    @Resource
+    private PictureFavoriteMapper pictureFavoriteMapper;
+
+    @Resource
+    private UserFollowMapper userFollowMapper;
+
+    @Resource
+    private UserFollowCountManager userFollowCountManager;
+
+    private InteractionRingBuffer<InteractionWrite> ringBuffer;
+
+    private final Map<InteractionWrite.Table, TableWriter<?>> tableWriters = new EnumMap<>(InteractionWrite.Table.class);
+
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    /**
+     * 写入线程是否正在等待新写入
+     */
+    private volatile boolean idle;
+
+    @PostConstruct
+    public void init() {
+        tableWriters.put(InteractionWrite.Table.PICTURE_LIKE, new TableWriter<>(pictureLikeMapper,
+                "pictureId", "userId", this::listExistingPictureIds,
+                (id, pictureId, userId) -> {
+                    PictureLike pictureLike = new PictureLike();
+                    pictureLike.setId(id);
+                    pictureLike.setPictureId(pictureId);
+                    pictureLike.setUserId(userId);
+                    return pictureLike;
+                },
+                pictureLikeMapper::insertIgnoreBatch,
+                PictureLike::getId, PictureLike::getPictureId, PictureLike::getUserId,
+                PictureLike::getCreateTime));
+        tableWriters.put(InteractionWrite.Table.PICTURE_FAVORITE, new TableWriter<>(pictureFavoriteMapper,
+                "pictureId", "userId", this::listExistingPictureIds,
+                (id, pictureId, userId) -> {
+                    PictureFavorite pictureFavorite = new PictureFavorite();
+                    pictureFavorite.setId(id);
+                    pictureFavorite.setPictureId(pictureId);
+                    pictureFavorite.setUserId(userId);
+                    return pictureFavorite;
+                },
+                pictureFavoriteMapper::insertIgnoreBatch,
+                PictureFavorite::getId, PictureFavorite::getPictureId, PictureFavorite::getUserId,
+                PictureFavorite::getCreateTime));
+        tableWriters.put(InteractionWrite.Table.USER_FOLLOW, new TableWriter<>(userFollowMapper,
+                "followeeId", "followerId", this::listExistingUserIds,
+                (id, followeeId, followerId) -> {
+                    UserFollow userFollow = new UserFollow();
+                    userFollow.setId(id);
+                    userFollow.setFolloweeId(followeeId);
+                    userFollow.setFollowerId(followerId);
+                    return userFollow;
+                },
+                userFollowMapper::insertIgnoreBatch,
+                UserFollow::getId, UserFollow::getFolloweeId, UserFollow::getFollowerId,
+                UserFollow::getCreateTime));
+        if (!enabled) {
+            return;
+        }
+        ringBuffer = new InteractionRingBuffer<>(capacity);
+        running = true;
+        writerThread = new Thread(this::runWriter, "interaction-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 写入并等待提交
+     *
+     * @param targetId 图片 id 或被关注者 id
+     * @param userId    操作的用户 id
+     * @param onApplied 写入生效时在写入事务中调用（可能在写入线程中），可以为 null
+     * @return true 表示写入生效，false 表示没有变化（目标不存在、已经存在或本来不存在）
+     */
+    public boolean write(InteractionWrite.Type type, long targetId, long userId,
+                         Consumer<InteractionWrite> onApplied) {
+        InteractionWrite write = new InteractionWrite(type, targetId, userId, onApplied);
+        if (running && writerThread.isAlive() && ringBuffer.offer(write)) {
+            if (idle) {
+                LockSupport.unpark(writerThread);
+            }
+            return awaitResult(write);
+        }
+        // 队列已满、写入线程已经退出或管道未启用，在当前线程直接执行
+        write.claim();
+        execute(Collections.singletonList(write));
+        return getResult(write);
+    }
+
+    /**
+     * 等待写入线程的结果，超时且写入还没有被取出时改为在当前线程直接执行；
+     * 已经被取出（写入线程正在执行）时再等待一次，仍然超时则返回失败，不会无限期占用请求线程；
+     * 此时写入仍可能提交，提交之后的更新已经通过 onApplied 注册在写入事务上，不依赖调用方
+     */
+    private boolean awaitResult(InteractionWrite write) {
+        try {
+            write.getFuture().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (write.claim()) {
+                log.warn("互动写入等待超时，改为直接写入，type: {}，targetId: {}，userId: {}",
+                        write.getType(), write.getTargetId(), write.getUserId());
+                execute(Collections.singletonList(write));
+            } else {
+                try {
+                    write.getFuture().get(timeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException timeoutException) {
+                    log.error("互动写入超时，type: {}，targetId: {}，userId: {}",
+                            write.getType(), write.getTargetId(), write.getUserId());
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "操作超时，请稍后再试");
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "操作失败，请稍后再试");
+                } catch (ExecutionException executionException) {
+                    // 异常在 getResult 中处理
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "操作失败，请稍后再试");
+        } catch (ExecutionException e) {
+            // 异常在 getResult 中处理
+        }
+        return getResult(write);
+    }
+
+    /**
+     * 读取已经完成的写入结果
+     */
+    private boolean getResult(InteractionWrite write) {
+        try {
+            return write.getFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof BusinessException) {
+                throw (BusinessException) e.getCause();
+            }
+            log.error("互动写入失败，type: {}，targetId: {}，userId: {}",
+                    write.getType(), write.getTargetId(), write.getUserId(), e.getCause());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "操作失败，请稍后再试");
+        }
+    }
+
+    private void runWriter() {
+        List<InteractionWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !ringBuffer.isEmpty()) {
+            InteractionWrite write;
+            while (batch.size() < maxBatchSize && (write = ringBuffer.poll()) != null) {
+                // 等待超时的请求线程可能已经自己执行了这个写入
+                if (write.claim()) {
+                    batch.add(write);
+                }
+            }
+            if (batch.isEmpty()) {
+                idle = true;
+                // 标记之后再检查一次：生产者先写入再读取标记，两边至少有一方能看到对方，不会错过唤醒
+                if (ringBuffer.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                continue;
+            }
+            try {
+                execute(batch);
+            } catch (Throwable e) {
+                // 包括 Error：写入线程不能退出，未完成的写入返回失败
+                log.error("互动写入线程执行失败，数量: {}", batch.size(), e);
+                batch.forEach(failedWrite -> failedWrite.getFuture().completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * 在一个事务中执行一批写入，生效的写入在事务中回调 onApplied，提交后完成每个写入的结果
+     * 整批失败时逐个重试，一个写入的错误不影响同批的其他写入；回滚的事务中注册的提交后更新不会执行
+     */
+    private void execute(List<InteractionWrite> batch) {
+        Set<InteractionWrite> applied;
+        try {
+            applied = transactionTemplate.execute(status -> {
+                Set<InteractionWrite> result = new HashSet<>();
+                for (List<InteractionWrite> group : splitConflicts(batch)) {
+                    applyGroup(group, result);
+                }
+                addFollowCounts(result);
+                notifyApplied(batch, result);
+                return result;
+            });
+        } catch (Exception e) {
+            if (batch.size() > 1) {
+                log.warn("互动批量写入失败，逐个重试，数量: {}", batch.size(), e);
+                batch.forEach(write -> execute(Collections.singletonList(write)));
+            } else {
+                batch.get(0).getFuture().completeExceptionally(e);
+            }
+            return;
+        }
+        for (InteractionWrite write : batch) {
+            write.getFuture().complete(applied != null && applied.contains(write));
+        }
+    }
+
+    /**
+     * 按顺序拆分为多个分组，同一对目标和用户的多次写入（如点赞后立即取消）落在不同分组，按先后执行
+     */
+    private List<List<InteractionWrite>> splitConflicts(List<InteractionWrite> batch) {
+        List<List<InteractionWrite>> groups = new ArrayList<>();
+        List<InteractionWrite> group = new ArrayList<>();
+        Set<String> conflictKeys = new HashSet<>();
+        for (InteractionWrite write : batch) {
+            if (!conflictKeys.add(write.conflictKey())) {
+                groups.add(group);
+                group = new ArrayList<>();
+                conflictKeys.clear();
+                conflictKeys.add(write.conflictKey());
+            }
+            group.add(write);
+        }
+        groups.add(group);
+        return groups;
+    }
+
+    /**
+     * 每种类型一条多行语句
+     */
+    private void applyGroup(List<InteractionWrite> group, Set<InteractionWrite> applied) {
+        Map<InteractionWrite.Type, List<InteractionWrite>> typeMap = group.stream()
+                .collect(Collectors.groupingBy(InteractionWrite::getType,
+                        () -> new EnumMap<>(InteractionWrite.Type.class), Collectors.toList()));
+        typeMap.forEach((type, writes) -> {
+            TableWriter<?> tableWriter = tableWriters.get(type.getTable());
+            applied.addAll(type.isInsert() ? tableWriter.insert(writes) : tableWriter.delete(writes));
+        });
+    }
+
+    /**
+     * 生效的关注、取消关注合并为每个用户的增量，在同一事务中一条语句更新粉丝数和关注数
+     */
+    private void addFollowCounts(Set<InteractionWrite> applied) {
+        Map<Long, Integer> followerDeltas = new HashMap<>();
+        Map<Long, Integer> followingDeltas = new HashMap<>();
+        for (InteractionWrite write : applied) {
+            if (write.getType().getTable() != InteractionWrite.Table.USER_FOLLOW) {
+                continue;
+            }
+            int delta = write.getType().isInsert() ? 1 : -1;
+            followerDeltas.merge(write.getTargetId(), delta, Integer::sum);
+            followingDeltas.merge(write.getUserId(), delta, Integer::sum);
+        }
+        if (!followerDeltas.isEmpty()) {
+            userFollowCountManager.addCounts(followerDeltas, followingDeltas);
+        }
+    }
+
+    /**
+     * 按写入顺序回调生效的写入
+     */
+    private void notifyApplied(List<InteractionWrite> batch, Set<InteractionWrite> applied) {
+        for (InteractionWrite write : batch) {
+            if (write.getOnApplied() != null && applied.contains(write)) {
+                write.getOnApplied().accept(write);
+            }
+        }
+    }
+
+    private Set<Long> listExistingPictureIds(Collection<Long> pictureIds) {
+        QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id");
+        queryWrapper.in("id", pictureIds);
+        return pictureMapper.selectObjs(queryWrapper).stream()
+                .map(id -> ((Number) id).longValue())
+                .collect(Collectors.toSet());
+    }
+
+    private Set<Long> listExistingUserIds(Collection<Long> userIds) {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id");
+        queryWrapper.in("id", userIds);
+        return userMapper.selectObjs(queryWrapper).stream()
+                .map(id -> ((Number) id).longValue())
+                .collect(Collectors.toSet());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writerThread == null) {
+            return;
+        }
+        // 停止接收新写入，写入线程处理完队列中剩余的写入后退出
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!writerThread.isAlive()) {
+            // 写入线程退出前最后一次检查之后才放入的写入
+            InteractionWrite write;
+            while ((write = ringBuffer.poll()) != null) {
+                if (write.claim()) {
+                    execute(Collections.singletonList(write));
+                }
+            }
+        }
+    }
+
+    /**
+     * 创建记录
+     */
+    private interface RowFactory<T> {
+        T create(long id, long targetId, long userId);
+    }
+
+    /**
+     * 一张互动表的批量写入
+     */
+    private static class TableWriter<T> {
+
+        private final BaseMapper<T> mapper;
+
+        private final String targetColumn;
+
+        private final String userColumn;
+
+        private final Function<Collection<Long>, Set<Long>> existingTargetLoader;
+
+        private final RowFactory<T> rowFactory;
+
+        private final Function<List<T>, Integer> insertIgnoreBatch;
+
+        private final Function<T, Long> idGetter;
+
+        private final Function<T, Long> targetGetter;
+
+        private final Function<T, Long> userGetter;
+
+        private final Function<T, Date> createTimeGetter;
+
+        TableWriter(BaseMapper<T> mapper, String targetColumn, String userColumn,
+                    Function<Collection<Long>, Set<Long>> existingTargetLoader, RowFactory<T> rowFactory,
+                    Function<List<T>, Integer> insertIgnoreBatch,
+                    Function<T, Long> idGetter, Function<T, Long> targetGetter, Function<T, Long> userGetter,
+                    Function<T, Date> createTimeGetter) {
+            this.mapper = mapper;
+            this.targetColumn = targetColumn;
+            this.userColumn = userColumn;
+            this.existingTargetLoader = existingTargetLoader;
+            this.rowFactory = rowFactory;
+            this.insertIgnoreBatch = insertIgnoreBatch;
+            this.idGetter = idGetter;
+            this.targetGetter = targetGetter;
+            this.userGetter = userGetter;
+            this.createTimeGetter = createTimeGetter;
+        }
+
+        /**
+         * 一次查询过滤不存在的目标，一条多行 INSERT IGNORE；有记录被唯一索引忽略时按本次生成的 id 查出实际插入的记录
+         */
+        Set<InteractionWrite> insert(List<InteractionWrite> writes) {
+            Set<Long> existingTargetIds = existingTargetLoader.apply(writes.stream()
+                    .map(InteractionWrite::getTargetId)
+                    .collect(Collectors.toSet()));
+            Map<Long, InteractionWrite> idWriteMap = new HashMap<>();
+            List<T> rows = new ArrayList<>();
+            for (InteractionWrite write : writes) {
+                if (existingTargetIds.contains(write.getTargetId())) {
+                    long id = IdWorker.getId();
+                    idWriteMap.put(id, write);
+                    rows.add(rowFactory.create(id, write.getTargetId(), write.getUserId()));
+                }
+            }
+            if (rows.isEmpty()) {
+                return Collections.emptySet();
+            }
+            int affectedRows = insertIgnoreBatch.apply(rows);
+            if (affectedRows == rows.size()) {
+                return new HashSet<>(idWriteMap.values());
+            }
+            return mapper.selectByIds(idWriteMap.keySet()).stream()
+                    .map(row -> idWriteMap.get(idGetter.apply(row)))
+                    .collect(Collectors.toSet());
+        }
+
+        /**
+         * 一次查询锁定要删除的记录，再按 id 批量删除，并发删除时每条记录只被一个写入删除
+         * 生效的写入记下被删除记录的创建时间，调用方据此撤销当时计入的热度
+         */
+        Set<InteractionWrite> delete(List<InteractionWrite> writes) {
+            QueryWrapper<T> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id", targetColumn, userColumn, "createTime");
+            queryWrapper.and(wrapper -> {
+                for (int i = 0; i < writes.size(); i++) {
+                    InteractionWrite write = writes.get(i);
+                    if (i > 0) {
+                        wrapper.or();
+                    }
+                    wrapper.nested(pair -> pair.eq(targetColumn, write.getTargetId())
+                            .eq(userColumn, write.getUserId()));
+                }
+            });
+            queryWrapper.last("for update");
+            List<T> rows = mapper.selectList(queryWrapper);
+            if (CollUtil.isEmpty(rows)) {
+                return Collections.emptySet();
+            }
+            mapper.deleteByIds(rows.stream().map(idGetter).collect(Collectors.toList()));
+            Map<String, T> deletedRowMap = rows.stream()
+                    .collect(Collectors.toMap(row -> targetGetter.apply(row) + ":" + userGetter.apply(row),
+                            row -> row, (first, second) -> first));
+            Set<InteractionWrite> deleted = new HashSet<>();
+            for (InteractionWrite write : writes) {
+                T row = deletedRowMap.get(write.getTargetId() + ":" + write.getUserId());
+                if (row != null) {
+                    write.setRemovedCreateTime(createTimeGetter.apply(row));
+                    deleted.add(write);
+                }
+            }
+            return deleted;
+        }
+    }
+}
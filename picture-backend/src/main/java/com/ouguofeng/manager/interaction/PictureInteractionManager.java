@@ -0,0 +1,263 @@
+package com.ouguofeng.manager.interaction;
+
+import cn.hutool.core.collection.CollUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.ouguofeng.mapper.PictureFavoriteMapper;
+import com.ouguofeng.mapper.PictureLikeMapper;
+import com.ouguofeng.model.entity.PictureFavorite;
+import com.ouguofeng.model.entity.PictureLike;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 用户点赞和收藏的图片 id 集合
+ * 每个活跃用户在 Redis 中保存两个 Set（点赞、收藏），第一次用到时从数据库加载，点赞、收藏时同步更新；
+ * 判断一批图片是否已点赞和收藏只需要一次管道内的 SMISMEMBER（需要 Redis 6.2 及以上），不查询数据库
+ */
+@Slf4j
+@Component
+public class PictureInteractionManager {
+
+    private static final String LIKED_KEY_PREFIX = "user:liked:";
+
+    private static final String FAVORITED_KEY_PREFIX = "user:favorited:";
+
+    /**
+     * 集合中的占位成员（不存在 id 为 0 的图片），表示集合已经从数据库加载，没有任何记录的用户也有集合
+     */
+    private static final String LOADED_MARKER = "0";
+
+    /**
+     * 集合的过期时间（秒），每次读取时续期，不活跃的用户自然淘汰
+     */
+    private static final long EXPIRE_SECONDS = 3600L;
+
+    /**
+     * 集合已经加载时才更新，未加载的集合下次读取时从数据库加载
+     * ARGV 依次为命令（SADD / SREM）和图片 id
+     */
+    private static final DefaultRedisScript<Long> UPDATE_IF_LOADED_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end " +
+                    "return redis.call(ARGV[1], KEYS[1], unpack(ARGV, 2))",
+            Long.class);
+
+    /**
+     * 集合不存在时写入从数据库加载的 id（分批 SADD，避免参数过多），已经存在时不覆盖
+     */
+    private static final DefaultRedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+                    "for i = 2, #ARGV, 1000 do " +
+                    "redis.call('SADD', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV))) " +
+                    "end " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+                    "return 1",
+            Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private PictureLikeMapper pictureLikeMapper;
+
+    @Resource
+    private PictureFavoriteMapper pictureFavoriteMapper;
+
+    /**
+     * 用户对一批图片的点赞和收藏状态
+     */
+    @Data
+    public static class PictureInteractions {
+
+        /**
+         * 已点赞的图片 id
+         */
+        private Set<Long> likedPictureIds = new HashSet<>();
+
+        /**
+         * 已收藏的图片 id
+         */
+        private Set<Long> favoritedPictureIds = new HashSet<>();
+    }
+
+    /**
+     * 查询用户对这些图片的点赞和收藏状态
+     * Redis 不可用时退回数据库批量查询
+     */
+    public PictureInteractions getInteractions(long userId, Collection<Long> pictureIds) {
+        PictureInteractions interactions = new PictureInteractions();
+        if (CollUtil.isEmpty(pictureIds)) {
+            return interactions;
+        }
+        List<Long> pictureIdList = new ArrayList<>(pictureIds);
+        String likedKey = LIKED_KEY_PREFIX + userId;
+        String favoritedKey = FAVORITED_KEY_PREFIX + userId;
+        // 第一个成员是加载标记，之后依次是图片 id
+        byte[][] members = new byte[pictureIdList.size() + 1][];
+        members[0] = LOADED_MARKER.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < pictureIdList.size(); i++) {
+            members[i + 1] = String.valueOf(pictureIdList.get(i)).getBytes(StandardCharsets.UTF_8);
+        }
+        List<Object> results;
+        try {
+            results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byte[] likedKeyBytes = likedKey.getBytes(StandardCharsets.UTF_8);
+                byte[] favoritedKeyBytes = favoritedKey.getBytes(StandardCharsets.UTF_8);
+                connection.setCommands().sMIsMember(likedKeyBytes, members);
+                connection.setCommands().sMIsMember(favoritedKeyBytes, members);
+                connection.keyCommands().expire(likedKeyBytes, EXPIRE_SECONDS);
+                connection.keyCommands().expire(favoritedKeyBytes, EXPIRE_SECONDS);
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("查询用户点赞和收藏集合失败，userId: {}", userId, e);
+            interactions.setLikedPictureIds(listLikedPictureIds(userId, pictureIdList));
+            interactions.setFavoritedPictureIds(listFavoritedPictureIds(userId, pictureIdList));
+            return interactions;
+        }
+        interactions.setLikedPictureIds(toMemberSet(results.get(0), pictureIdList,
+                () -> loadSet(likedKey, listLikedPictureIds(userId, null))));
+        interactions.setFavoritedPictureIds(toMemberSet(results.get(1), pictureIdList,
+                () -> loadSet(favoritedKey, listFavoritedPictureIds(userId, null))));
+        return interactions;
+    }
+
+    /**
+     * SMISMEMBER 的结果转为图片 id 集合；集合还没有加载时从数据库加载全部 id 后再判断
+     */
+    @SuppressWarnings("unchecked")
+    private Set<Long> toMemberSet(Object result, List<Long> pictureIdList, Supplier<Set<Long>> loader) {
+        List<Boolean> flags = (List<Boolean>) result;
+        Set<Long> memberSet = new HashSet<>();
+        if (flags == null || !Boolean.TRUE.equals(flags.get(0))) {
+            Set<Long> allPictureIds = loader.get();
+            for (Long pictureId : pictureIdList) {
+                if (allPictureIds.contains(pictureId)) {
+                    memberSet.add(pictureId);
+                }
+            }
+            return memberSet;
+        }
+        for (int i = 0; i < pictureIdList.size(); i++) {
+            if (Boolean.TRUE.equals(flags.get(i + 1))) {
+                memberSet.add(pictureIdList.get(i));
+            }
+        }
+        return memberSet;
+    }
+
+    /**
+     * 把从数据库加载的 id 写入 Redis，写入失败不影响本次结果
+     */
+    private Set<Long> loadSet(String key, Set<Long> pictureIds) {
+        List<String> args = new ArrayList<>(pictureIds.size() + 2);
+        args.add(String.valueOf(EXPIRE_SECONDS));
+        args.add(LOADED_MARKER);
+        for (Long pictureId : pictureIds) {
+            args.add(String.valueOf(pictureId));
+        }
+        try {
+            stringRedisTemplate.execute(LOAD_SCRIPT, Collections.singletonList(key), args.toArray());
+        } catch (Exception e) {
+            log.error("加载用户点赞或收藏集合失败，key: {}", key, e);
+        }
+        return pictureIds;
+    }
+
+    /**
+     * 查询用户点赞的图片 id
+     *
+     * @param pictureIds 只查询这些图片，为 null 时查询全部
+     */
+    private Set<Long> listLikedPictureIds(long userId, Collection<Long> pictureIds) {
+        QueryWrapper<PictureLike> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("pictureId");
+        queryWrapper.eq("userId", userId);
+        queryWrapper.in(pictureIds != null, "pictureId", pictureIds);
+        Set<Long> result = new HashSet<>();
+        pictureLikeMapper.selectObjs(queryWrapper).forEach(id -> result.add(((Number) id).longValue()));
+        return result;
+    }
+
+    /**
+     * 查询用户收藏的图片 id
+     *
+     * @param pictureIds 只查询这些图片，为 null 时查询全部
+     */
+    private Set<Long> listFavoritedPictureIds(long userId, Collection<Long> pictureIds) {
+        QueryWrapper<PictureFavorite> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("pictureId");
+        queryWrapper.eq("userId", userId);
+        queryWrapper.in(pictureIds != null, "pictureId", pictureIds);
+        Set<Long> result = new HashSet<>();
+        pictureFavoriteMapper.selectObjs(queryWrapper).forEach(id -> result.add(((Number) id).longValue()));
+        return result;
+    }
+
+    /**
+     * 点赞或取消点赞后更新集合（在当前事务提交之后执行）
+     */
+    public void updateLiked(long userId, Collection<Long> pictureIds, boolean liked) {
+        updateAfterCommit(LIKED_KEY_PREFIX + userId, pictureIds, liked);
+    }
+
+    /**
+     * 收藏或取消收藏后更新集合（在当前事务提交之后执行）
+     */
+    public void updateFavorited(long userId, Collection<Long> pictureIds, boolean favorited) {
+        updateAfterCommit(FAVORITED_KEY_PREFIX + userId, pictureIds, favorited);
+    }
+
+    /**
+     * 事务回滚时点赞、收藏记录没有变化，集合也不能变化
+     */
+    private void updateAfterCommit(String key, Collection<Long> pictureIds, boolean add) {
+        if (CollUtil.isEmpty(pictureIds)) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update(key, pictureIds, add);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update(key, pictureIds, add);
+            }
+        });
+    }
+
+    private void update(String key, Collection<Long> pictureIds, boolean add) {
+        List<String> args = new ArrayList<>(pictureIds.size() + 1);
+        args.add(add ? "SADD" : "SREM");
+        for (Long pictureId : pictureIds) {
+            args.add(String.valueOf(pictureId));
+        }
+        try {
+            stringRedisTemplate.execute(UPDATE_IF_LOADED_SCRIPT, Collections.singletonList(key), args.toArray());
+        } catch (Exception e) {
+            // 更新失败时删除集合，下次读取时从数据库重新加载
+            log.error("更新用户点赞或收藏集合失败，key: {}", key, e);
+            try {
+                stringRedisTemplate.delete(key);
+            } catch (Exception ignored) {
+                // Redis 不可用，集合会随过期时间淘汰
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.ouguofeng.mapper;
+
+import com.ouguofeng.model.entity.PictureCounterStripe;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 针对表【picture_counter_stripe(图片计数分片)】的数据库操作Mapper
+ * 表使用 (pictureId, stripe) 联合主键，不继承 BaseMapper
+ */
+public interface PictureCounterStripeMapper {
+
+    /**
+     * 批量累加分片增量（一条多行插入），分片不存在时插入，存在时累加
+     */
+    int batchIncrement(@Param("stripeList") List<PictureCounterStripe> stripeList);
+
+    /**
+     * 查询有待汇总增量的图片 id
+     */
+    List<Long> selectPictureIds(@Param("limit") int limit);
+
+    /**
+     * 锁定并读取这些图片的全部分片
+     */
+    List<PictureCounterStripe> selectByPictureIdsForUpdate(@Param("pictureIds") List<Long> pictureIds);
+
+    /**
+     * 删除这些图片的全部分片（已经汇总到图片表）
+     */
+    int deleteByPictureIds(@Param("pictureIds") List<Long> pictureIds);
+}
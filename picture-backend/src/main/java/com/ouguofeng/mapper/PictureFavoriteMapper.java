@@ -2,6 +2,9 @@ package com.ouguofeng.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.ouguofeng.model.entity.PictureFavorite;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * @author 20571
@@ -11,5 +14,10 @@ import com.ouguofeng.model.entity.PictureFavorite;
  */
 public interface PictureFavoriteMapper extends BaseMapper<PictureFavorite> {
 
+    /**
+     * 批量新增收藏记录（一条多行插入），已经收藏过的由唯一索引 uk_pictureId_userId 忽略
+     *
+     * @return 影响的行数，即实际新增的记录数
+     */
+    int insertIgnoreBatch(@Param("pictureFavoriteList") List<PictureFavorite> pictureFavoriteList);
 }
-
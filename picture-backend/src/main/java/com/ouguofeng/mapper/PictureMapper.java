@@ -2,6 +2,9 @@ package com.ouguofeng.mapper;
 
 import com.ouguofeng.model.entity.Picture;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
 * @author 20571
@@ -11,6 +14,30 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface PictureMapper extends BaseMapper<Picture> {
 
+    /**
+     * 批量更新图片的点赞数和收藏数（一条 UPDATE，不修改更新时间）
+     *
+     * @param pictureList 只需要 id、likeCount、favoriteCount
+     * @return 影响的行数
+     */
+    int batchUpdateCounts(@Param("pictureList") List<Picture> pictureList);
+
+    /**
+     * 批量累加图片的点赞数和收藏数（一条 UPDATE，不修改更新时间），结果不小于 0
+     *
+     * @param pictureList 只需要 id、likeCount、favoriteCount，计数字段为增量
+     * @return 影响的行数
+     */
+    int batchAddCounts(@Param("pictureList") List<Picture> pictureList);
+
+    /**
+     * 查询用户关注的作者最新的公开图片 id（按 id 倒序），用于重建关注动态的收件箱
+     *
+     * @param followerId 关注者 id
+     * @param limit      最多返回的数量
+     * @return 图片 id 列表
+     */
+    List<Long> selectFeedPictureIds(@Param("followerId") long followerId, @Param("limit") int limit);
 }
 
 
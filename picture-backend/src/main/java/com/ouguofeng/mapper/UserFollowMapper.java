@@ -2,6 +2,9 @@ package com.ouguofeng.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.ouguofeng.model.entity.UserFollow;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * @author 20571
@@ -11,6 +14,12 @@ import com.ouguofeng.model.entity.UserFollow;
  */
 public interface UserFollowMapper extends BaseMapper<UserFollow> {
 
+    /**
+     * 批量新增关注记录（一条多行插入），已经关注过的由唯一索引 uk_followerId_followeeId 忽略
+     *
+     * @return 影响的行数，即实际新增的记录数
+     */
+    int insertIgnoreBatch(@Param("userFollowList") List<UserFollow> userFollowList);
 }
 
 
@@ -2,6 +2,9 @@ package com.ouguofeng.mapper;
 
 import com.ouguofeng.model.entity.User;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
 * @author 20571
@@ -11,6 +14,21 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface UserMapper extends BaseMapper<User> {
 
+    /**
+     * 批量累加粉丝数和关注数（一条 UPDATE，不修改更新时间），结果不小于 0
+     *
+     * @param userList 只需要 id、followerCount、followingCount，计数字段为增量
+     * @return 影响的行数
+     */
+    int batchAddFollowCounts(@Param("userList") List<User> userList);
+
+    /**
+     * 批量设置粉丝数和关注数（一条 UPDATE，不修改更新时间）
+     *
+     * @param userList 只需要 id、followerCount、followingCount
+     * @return 影响的行数
+     */
+    int batchUpdateFollowCounts(@Param("userList") List<User> userList);
 }
 
 
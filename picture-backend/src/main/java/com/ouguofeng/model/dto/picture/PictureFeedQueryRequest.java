@@ -0,0 +1,22 @@
+package com.ouguofeng.model.dto.picture;
+
+import com.ouguofeng.common.PageRequest;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.io.Serializable;
+
+/**
+ * 关注动态查询请求（当前登录用户关注的作者最新的公开图片）
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public class PictureFeedQueryRequest extends PageRequest implements Serializable {
+
+    /**
+     * 上一页最后一张图片的 id（可选，游标分页：传入时从这张图片之后继续查询，忽略 current，不统计总数）
+     */
+    private Long lastPictureId;
+
+    private static final long serialVersionUID = 1L;
+}
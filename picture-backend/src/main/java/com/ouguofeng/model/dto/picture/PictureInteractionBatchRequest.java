@@ -0,0 +1,20 @@
+package com.ouguofeng.model.dto.picture;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 图片批量交互请求（批量点赞/收藏）
+ */
+@Data
+public class PictureInteractionBatchRequest implements Serializable {
+
+    /**
+     * 图片 id 列表
+     */
+    private List<Long> pictureIdList;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -18,6 +18,11 @@ public class PictureInteractionQueryRequest extends PageRequest implements Seria
      */
     private Long userId;
 
+    /**
+     * 游标（可选，取上一页返回的 nextCursor）：传入时从上一页最后一条记录之后继续查询，忽略 current，不统计总数
+     */
+    private String cursor;
+
     private static final long serialVersionUID = 1L;
 }
 
@@ -0,0 +1,38 @@
+package com.ouguofeng.model.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 图片计数分片
+ * @TableName picture_counter_stripe
+ */
+@TableName(value = "picture_counter_stripe")
+@Data
+public class PictureCounterStripe implements Serializable {
+    /**
+     * 图片 id
+     */
+    private Long pictureId;
+
+    /**
+     * 分片序号
+     */
+    private Integer stripe;
+
+    /**
+     * 点赞数增量
+     */
+    private Integer likeCount;
+
+    /**
+     * 收藏数增量
+     */
+    private Integer favoriteCount;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
@@ -74,6 +74,18 @@ public class User implements Serializable {
      */
     private String userEmail;
 
+    /**
+     * 粉丝数（只通过关注计数语句更新，updateById 不会覆盖）
+     */
+    @TableField(updateStrategy = FieldStrategy.NEVER)
+    private Integer followerCount;
+
+    /**
+     * 关注数（只通过关注计数语句更新，updateById 不会覆盖）
+     */
+    @TableField(updateStrategy = FieldStrategy.NEVER)
+    private Integer followingCount;
+
     /**
      * 是否删除
      */
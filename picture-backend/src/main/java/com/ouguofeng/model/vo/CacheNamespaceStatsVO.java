@@ -0,0 +1,105 @@
+package com.ouguofeng.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * 单个缓存命名空间的统计视图
+ */
+@Data
+public class CacheNamespaceStatsVO implements Serializable {
+
+    /**
+     * 命名空间（缓存键的前缀，如 picture:vo）
+     */
+    private String namespace;
+
+    /**
+     * 读取次数
+     */
+    private Long requestCount;
+
+    /**
+     * 本地缓存命中次数
+     */
+    private Long localHitCount;
+
+    /**
+     * Redis 命中次数
+     */
+    private Long redisHitCount;
+
+    /**
+     * 两级缓存都未命中的次数
+     */
+    private Long missCount;
+
+    /**
+     * 总命中率（本地 + Redis）
+     */
+    private Double hitRate;
+
+    /**
+     * 本地缓存命中率
+     */
+    private Double localHitRate;
+
+    /**
+     * Redis 读取平均耗时（毫秒）
+     */
+    private Double avgRedisMillis;
+
+    /**
+     * 回源加载（查询数据库）次数
+     */
+    private Long loadCount;
+
+    /**
+     * 回源加载失败次数
+     */
+    private Long loadFailureCount;
+
+    /**
+     * 回源加载平均耗时（毫秒）
+     */
+    private Double avgLoadMillis;
+
+    /**
+     * 回源加载最大耗时（毫秒）
+     */
+    private Double maxLoadMillis;
+
+    /**
+     * 本地缓存因容量或过期被淘汰的次数
+     */
+    private Long evictionCount;
+
+    /**
+     * 写入次数
+     */
+    private Long writeCount;
+
+    /**
+     * 写入值的平均大小（字节，编码后）
+     */
+    private Double avgValueBytes;
+
+    /**
+     * 压缩写入的次数
+     */
+    private Long compressedWriteCount;
+
+    /**
+     * 压缩率（写入的总字节数 / 未压缩时的总字节数）
+     */
+    private Double compressionRatio;
+
+    /**
+     * 写入值的大小分布，键为区间，值为次数
+     */
+    private Map<String, Long> valueSizeDistribution;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,45 @@
+package com.ouguofeng.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 缓存统计视图
+ */
+@Data
+public class CacheStatsVO implements Serializable {
+
+    /**
+     * 本地缓存当前条目数（估算值）
+     */
+    private Long localSize;
+
+    /**
+     * 本地缓存命中率（Caffeine 统计）
+     */
+    private Double localHitRate;
+
+    /**
+     * 本地缓存淘汰次数（Caffeine 统计）
+     */
+    private Long localEvictionCount;
+
+    /**
+     * 本地缓存当前估算占用（字节）
+     */
+    private Long localWeightBytes;
+
+    /**
+     * 本地缓存内存预算（字节）
+     */
+    private Long localMaxWeightBytes;
+
+    /**
+     * 按命名空间统计
+     */
+    private List<CacheNamespaceStatsVO> namespaces;
+
+    private static final long serialVersionUID = 1L;
+}
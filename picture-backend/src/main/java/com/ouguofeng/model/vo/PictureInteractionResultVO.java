@@ -0,0 +1,33 @@
+package com.ouguofeng.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 批量点赞/收藏中单张图片的处理结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PictureInteractionResultVO implements Serializable {
+
+    /**
+     * 图片 id
+     */
+    private Long pictureId;
+
+    /**
+     * 是否成功
+     */
+    private Boolean success;
+
+    /**
+     * 失败原因，成功时为空
+     */
+    private String message;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -53,6 +53,15 @@ public class UserVO implements Serializable {
      */
     private String userEmail;
 
+    /**
+     * 粉丝数
+     */
+    private Integer followerCount;
+
+    /**
+     * 关注数
+     */
+    private Integer followingCount;
 
     private static final long serialVersionUID = 1L;
 }
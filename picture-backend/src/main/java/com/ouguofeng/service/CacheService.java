@@ -1,71 +1,144 @@
 package com.ouguofeng.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.ouguofeng.model.vo.CacheStatsVO;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 /**
  * 通用缓存服务接口
  * 提供统一的缓存操作方法
+ * 本地缓存保存解码后的对象，命中时不需要再解析，返回的对象会被多个请求共享，调用方不要修改
  */
 public interface CacheService {
     
     /**
      * 获取缓存值
      * @param key 缓存键
+     * @param type 缓存值类型
      * @return 缓存值，如果不存在返回null
      */
-    String get(String key);
+    <T> T get(String key, Class<T> type);
+
+    /**
+     * 获取缓存值（泛型类型，如 Page<PictureVO>）
+     * @param key 缓存键
+     * @param typeReference 缓存值类型
+     * @return 缓存值，如果不存在返回null
+     */
+    <T> T get(String key, TypeReference<T> typeReference);
     
+    /**
+     * 批量获取缓存值
+     * 先查本地缓存，本地未命中的键通过一次 Redis MGET 读取
+     * @param keys 缓存键
+     * @param type 缓存值类型
+     * @return 命中的缓存值（键到值），未命中的键不在结果中
+     */
+    <T> Map<String, T> multiGet(Collection<String> keys, Class<T> type);
+
     /**
      * 设置缓存值
      * @param key 缓存键
      * @param value 缓存值
      * @param expireSeconds 过期时间（秒），如果为null则使用默认过期时间
      */
-    void set(String key, String value, Integer expireSeconds);
-    
+    void set(String key, Object value, Integer expireSeconds);
+
     /**
-     * 删除缓存
+     * 设置缓存值，并记录缓存依赖的标签
      * @param key 缓存键
+     * @param value 缓存值
+     * @param expireSeconds 过期时间（秒），如果为null则使用默认过期时间
+     * @param tags 依赖标签，标签失效时该缓存一起被清除
      */
-    void delete(String key);
-    
+    void set(String key, Object value, Integer expireSeconds, Collection<String> tags);
+
     /**
-     * 批量删除缓存（根据模式匹配）
-     * @param pattern 匹配模式，如 "user:vo:*"
+     * 批量设置缓存值，通过 Redis 管道一次写入
+     * @param values 缓存键到缓存值
+     * @param expireSeconds 过期时间（秒），如果为null则使用默认过期时间
      */
-    void deleteByPattern(String pattern);
-    
+    void multiSet(Map<String, ?> values, Integer expireSeconds);
+
     /**
-     * 获取本地缓存中的值
+     * 获取缓存值，未命中时加载并写入缓存（防止缓存击穿）
+     * 同一节点内相同键的并发请求共享一次加载；节点之间通过分布式锁只让一个节点加载，
+     * 没有拿到锁的节点等待加载完成的通知后读取缓存，不会各自查询数据库
+     * @param key 缓存键
+     * @param typeReference 缓存值类型
+     * @param expireSeconds 过期时间（秒），如果为null则使用默认过期时间
+     * @param loader 加载数据，返回null时不写入缓存
+     * @param tagger 根据加载结果计算依赖标签，可以为null
+     * @return 缓存值或加载结果
+     */
+    <T> T getOrLoad(String key, TypeReference<T> typeReference, Integer expireSeconds,
+                    Supplier<T> loader, Function<T, Collection<String>> tagger);
+
+    /**
+     * 获取缓存值，未命中时加载并写入缓存，超过软过期时间后返回旧值并在后台刷新
+     * 热点数据在硬过期之前就会被刷新，请求不需要等待重建；后台刷新时 loader 在其他线程执行，不能依赖当前请求
+     * @param key 缓存键
+     * @param typeReference 缓存值类型
+     * @param refreshSeconds 软过期时间（秒），如果为null则不后台刷新
+     * @param expireSeconds 硬过期时间（秒），如果为null则使用默认过期时间
+     * @param loader 加载数据，返回null时不写入缓存
+     * @param tagger 根据加载结果计算依赖标签，可以为null
+     * @return 缓存值或加载结果
+     */
+    <T> T getOrLoad(String key, TypeReference<T> typeReference, Integer refreshSeconds, Integer expireSeconds,
+                    Supplier<T> loader, Function<T, Collection<String>> tagger);
+
+    /**
+     * 删除缓存
      * @param key 缓存键
-     * @return 缓存值，如果不存在返回null
      */
-    String getLocalCache(String key);
+    void delete(String key);
     
     /**
-     * 设置本地缓存
+     * 构建带命名空间版本号的缓存键
+     * @param namespace 命名空间，见 CacheNamespaces
      * @param key 缓存键
-     * @param value 缓存值
+     * @return 带当前版本号的缓存键，命名空间失效后得到新的键
+     */
+    String versionedKey(String namespace, String key);
+
+    /**
+     * 使命名空间下的全部缓存失效
+     * 只把命名空间的版本号加一，不扫描键空间，旧版本的缓存由过期时间自然淘汰
+     * @param namespace 命名空间，见 CacheNamespaces
      */
-    void putLocalCache(String key, String value);
+    void invalidateNamespace(String namespace);
     
     /**
      * 尝试获取分布式锁（防止缓存击穿）
      * @param lockKey 锁的键
      * @param timeout 超时时间（秒）
-     * @return 是否获取到锁
+     * @return 持有者令牌，没有获取到锁时返回 null
      */
-    boolean tryLock(String lockKey, long timeout);
+    String tryLock(String lockKey, long timeout);
     
     /**
-     * 释放分布式锁
+     * 释放分布式锁，只有令牌一致（锁仍由自己持有）时才删除
      * @param lockKey 锁的键
+     * @param token 获取锁时返回的持有者令牌
      */
-    void releaseLock(String lockKey);
-    
+    void releaseLock(String lockKey, String token);
+
+    /**
+     * 清除依赖指定标签的缓存
+     * 只删除记录了这些标签的缓存项，不扫描键空间
+     * @param tags 失效的标签
+     */
+    void invalidateTags(Collection<String> tags);
+
     /**
-     * 清除图片列表缓存
-     * 清除本地缓存和Redis缓存（异步执行，不阻塞）
-     * 清除匹配 "listPictureVOByPage:*" 的所有缓存
+     * 获取缓存统计（按命名空间和层级统计命中率、耗时、淘汰和值大小）
+     * @return 缓存统计
      */
-    void clearPictureCache();
+    CacheStatsVO getCacheStats();
 }
 
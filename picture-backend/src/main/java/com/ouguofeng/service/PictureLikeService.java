@@ -5,9 +5,11 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.ouguofeng.model.dto.picture.PictureInteractionQueryRequest;
 import com.ouguofeng.model.entity.PictureLike;
 import com.ouguofeng.model.entity.User;
+import com.ouguofeng.model.vo.PictureInteractionResultVO;
 import com.ouguofeng.model.vo.PictureVO;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.List;
 
 /**
  * @author 20571
@@ -34,12 +36,31 @@ public interface PictureLikeService extends IService<PictureLike> {
      */
     boolean unlikePicture(long pictureId, User loginUser);
 
+    /**
+     * 批量点赞（一次多行插入和一次计数更新）
+     *
+     * @param pictureIdList 图片id列表
+     * @param loginUser     当前登录用户
+     * @return 每张图片的处理结果，顺序与去重后的请求一致
+     */
+    List<PictureInteractionResultVO> likePictureByBatch(List<Long> pictureIdList, User loginUser);
+
+    /**
+     * 批量取消点赞（一次批量删除和一次计数更新）
+     *
+     * @param pictureIdList 图片id列表
+     * @param loginUser     当前登录用户
+     * @return 每张图片的处理结果，顺序与去重后的请求一致
+     */
+    List<PictureInteractionResultVO> unlikePictureByBatch(List<Long> pictureIdList, User loginUser);
+
     /**
      * 获取用户点赞的图片列表
      *
      * @param pictureInteractionQueryRequest 查询请求
      * @param request
-     * @return 图片VO分页
+     * @return 图片VO分页，实际类型为 {@link com.ouguofeng.common.CursorPage}：游标分页时 total 为 0，
+     * 是否还有下一页以 hasMore 为准，下一页传入 nextCursor
      */
     Page<PictureVO> listLikedPictureByPage(PictureInteractionQueryRequest pictureInteractionQueryRequest,
                                            HttpServletRequest request);
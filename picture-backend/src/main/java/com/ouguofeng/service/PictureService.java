@@ -8,6 +8,7 @@ import com.ouguofeng.model.dto.picture.*;
 import com.ouguofeng.model.entity.Picture;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.ouguofeng.model.entity.User;
+import com.ouguofeng.model.vo.PictureTagCategory;
 import com.ouguofeng.model.vo.PictureVO;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -54,7 +55,7 @@ public interface PictureService extends IService<Picture> {
      * 获取图片包装类（单条）
      *
      * @param picture
-     * @param request
+     * @param request 为 null 时按未登录用户填充（不查询点赞和收藏）
      * @return
      */
     PictureVO getPictureVO(Picture picture, HttpServletRequest request);
@@ -63,11 +64,68 @@ public interface PictureService extends IService<Picture> {
      * 获取图片分页封装类
      *
      * @param picturePage
-     * @param request
+     * @param request 为 null 时按未登录用户填充（不查询点赞和收藏）
      * @return
      */
     Page<PictureVO> getPictureVOPage(Page<Picture> picturePage, HttpServletRequest request);
 
+    /**
+     * 填充当前登录用户对图片的点赞和收藏状态
+     * 缓存的图片数据不含用户相关信息，读取时再按当前用户填充，传入的对象不会被修改
+     *
+     * @param pictureVOList 图片列表
+     * @param request 未登录或为 null 时全部填充为 false
+     * @return 复制并填充后的图片列表
+     */
+    List<PictureVO> fillPictureInteraction(List<PictureVO> pictureVOList, HttpServletRequest request);
+
+    /**
+     * 按 id 批量获取图片封装类，结果保持 id 的顺序，已经不存在的图片跳过
+     * 图片从缓存批量读取，未命中的一次查询图片和创建用户，当前用户的点赞和收藏状态一次批量判断
+     *
+     * @param pictureIdList 图片 id 列表
+     * @param request       未登录或为 null 时点赞和收藏状态全部为 false
+     * @return 图片列表
+     */
+    List<PictureVO> listPictureVOByIds(List<Long> pictureIdList, HttpServletRequest request);
+
+    /**
+     * 分页获取公共图库图片（有缓存）
+     * 只返回审核通过的公共图片，结果被所有用户共享，不含当前用户的点赞和收藏状态，调用方不要修改
+     *
+     * @param pictureQueryRequest 查询条件
+     * @return 图片分页
+     */
+    Page<PictureVO> listPublicPictureVOByPageWithCache(PictureQueryRequest pictureQueryRequest);
+
+    /**
+     * 分页获取公共图库热门图片（按时间衰减的热度排序）
+     * 结果被所有用户共享，不含当前用户的点赞和收藏状态，调用方不要修改
+     *
+     * @param current 页码
+     * @param size    每页条数
+     * @return 图片分页
+     */
+    Page<PictureVO> listHotPictureVOByPage(long current, long size);
+
+    /**
+     * 获取关注动态（关注的作者最新的公开图片，按 id 倒序，游标分页）
+     * 不含当前用户的点赞和收藏状态
+     *
+     * @param userId        当前用户 id
+     * @param lastPictureId 上一页最后一张图片的 id，第一页为 null
+     * @param size          每页条数
+     * @return 图片列表，不足一页时说明没有更多
+     */
+    List<PictureVO> listFeedPictureVO(long userId, Long lastPictureId, int size);
+
+    /**
+     * 获取图片标签和分类（有缓存）
+     *
+     * @return 标签和分类
+     */
+    PictureTagCategory getPictureTagCategory();
+
     /**
      * 获取查询对象，转换对象信息
      *
@@ -1,26 +1,69 @@
 package com.ouguofeng.service.impl;
 
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.RandomUtil;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ouguofeng.manager.cache.CacheInvalidationBroadcaster;
+import com.ouguofeng.manager.cache.CacheLoadNotifier;
+import com.ouguofeng.manager.cache.CacheMetrics;
+import com.ouguofeng.manager.cache.CacheValueCodec;
+import com.ouguofeng.manager.cache.HotKeyDetector;
+import com.ouguofeng.manager.cache.RedisClientTracking;
+import com.ouguofeng.model.vo.CacheStatsVO;
 import com.ouguofeng.service.CacheService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.Cursor;
-import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 通用缓存服务实现
  * 提供两级缓存：本地缓存（Caffeine）+ Redis分布式缓存
+ * 本地缓存保存解码后的对象，Redis 中保存 Smile 二进制编码
+ * 通过 getOrLoad 写入的缓存可以设置软过期时间，超过后返回旧值并在后台刷新，硬过期时间由 Redis 控制
+ * 清除缓存时通过 Redis 发布订阅通知其他节点清除各自的本地缓存
+ * 批量清除使用命名空间版本号，不扫描键空间
+ * 按访问频率区分热点键和冷键：热点键本地保留更久并提前刷新，冷键更快过期
+ * 可选开启 Redis 客户端缓存失效通知（RESP3），从 Redis 读入本地的键在 Redis 中变化时由 Redis 推送失效
  */
 @Slf4j
 @Service
@@ -30,194 +73,849 @@ public class CacheServiceImpl implements CacheService {
     private StringRedisTemplate stringRedisTemplate;
 
     /**
-     * 本地缓存对象
+     * 缓存值读写使用的二进制模板
      */
-    private final Cache<String, String> LOCAL_CACHE = Caffeine.newBuilder()
+    @Resource
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    @Resource
+    private CacheInvalidationBroadcaster cacheInvalidationBroadcaster;
+
+    @Resource
+    private CacheValueCodec cacheValueCodec;
+
+    @Resource
+    private CacheLoadNotifier cacheLoadNotifier;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @Resource
+    private RedisClientTracking redisClientTracking;
+
+    /**
+     * 本地缓存默认过期时间
+     */
+    private static final Duration LOCAL_EXPIRE = Duration.ofMinutes(5);
+
+    /**
+     * 热点键的本地缓存过期时间，减少热点键访问 Redis 的次数
+     */
+    private static final Duration HOT_LOCAL_EXPIRE = Duration.ofMinutes(15);
+
+    /**
+     * 冷键的本地缓存过期时间，只访问过一次的键尽快让出本地缓存
+     */
+    private static final Duration COLD_LOCAL_EXPIRE = Duration.ofMinutes(1);
+
+    /**
+     * 热点键提前刷新的时间（毫秒），在软过期之前就开始后台刷新
+     */
+    private static final long HOT_REFRESH_AHEAD_MILLIS = 60_000L;
+
+    /**
+     * 本地缓存的内存预算（字节，估算值）
+     */
+    private static final long LOCAL_MAX_WEIGHT_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * 解码后的对象在堆中的大小按编码长度的倍数估算
+     */
+    private static final int OBJECT_WEIGHT_FACTOR = 4;
+
+    /**
+     * 本地缓存对象（保存解码后的对象或压缩后的编码，以及软过期时间），开启统计，淘汰时按命名空间计数
+     * 容量按估算的字节数限制，较大的值占用更多额度，不再按条目数限制
+     * 过期时间按写入时的访问频率决定：热点键保留更久，冷键很快过期
+     */
+    private final Cache<String, CacheEntry> LOCAL_CACHE = Caffeine.newBuilder()
             .initialCapacity(1024)
-            .maximumSize(10_000L)
-            .expireAfterWrite(Duration.ofMinutes(5))
+            .maximumWeight(LOCAL_MAX_WEIGHT_BYTES)
+            .weigher((String key, CacheEntry entry) -> key.length() * 2 + entry.weight)
+            .expireAfter(new Expiry<String, CacheEntry>() {
+                @Override
+                public long expireAfterCreate(String key, CacheEntry entry, long currentTime) {
+                    return localExpireNanos(key);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, CacheEntry entry, long currentTime, long currentDuration) {
+                    return localExpireNanos(key);
+                }
+
+                @Override
+                public long expireAfterRead(String key, CacheEntry entry, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .evictionListener((String key, CacheEntry entry, RemovalCause cause) -> {
+                if (key != null) {
+                    cacheMetrics.recordEviction(key);
+                }
+            })
             .build();
 
+    /**
+     * 失效序号的分段数，键按哈希分段，不同键共享分段只会多跳过几次本地缓存写入
+     */
+    private static final int INVALIDATION_STRIPES = 1024;
+
+    /**
+     * 每个分段的失效序号，收到失效通知（客户端缓存推送或其他节点广播）时递增
+     * 失效推送在 Lettuce IO 线程上处理，可能早于请求线程把刚读到的值写入本地缓存
+     */
+    private final AtomicLongArray invalidationSequences = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    /**
+     * 全局失效序号，清空全部本地缓存时递增
+     */
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
     /**
      * 默认过期时间（秒）
      */
     private static final int DEFAULT_EXPIRE_SECONDS = 600; // 10分钟
 
+    /**
+     * 冷键缩短过期时间后的下限（秒）
+     */
+    private static final int MIN_EXPIRE_SECONDS = 60;
+
+    /**
+     * 没有软过期时间的缓存项
+     */
+    private static final long NO_SOFT_EXPIRE = Long.MAX_VALUE;
+
     /**
      * 锁的键前缀
      */
     private static final String LOCK_KEY_PREFIX = "cache:lock:";
     
     /**
-     * 图片列表缓存键前缀
+     * 命名空间版本号键前缀
+     */
+    private static final String NAMESPACE_VERSION_KEY_PREFIX = "cache:gen:";
+
+    /**
+     * 命名空间版本号的过期时间
+     */
+    private static final Duration NAMESPACE_VERSION_EXPIRE = Duration.ofDays(7);
+
+    /**
+     * 本地记录的命名空间版本号，版本号变化时通过广播清除；
+     * 过期时间较短，广播消息丢失时也能很快读到新版本
+     */
+    private final Cache<String, Long> NAMESPACE_VERSIONS = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterWrite(Duration.ofSeconds(10))
+            .build();
+
+    /**
+     * 标签索引键前缀，每个标签对应一个 Set，记录依赖该标签的缓存键
+     */
+    private static final String TAG_KEY_PREFIX = "cache:tag:";
+
+    /**
+     * 缓存重建锁的键前缀
+     */
+    private static final String LOAD_LOCK_KEY_PREFIX = "load:";
+
+    /**
+     * 缓存重建锁的超时时间（秒），也是每轮等待其他节点加载完成的最长时间
+     */
+    private static final long LOAD_LOCK_TIMEOUT_SECONDS = 5;
+
+    /**
+     * 没有拿到重建锁时最多等待的轮数，超过后直接加载
      */
-    private static final String PICTURE_LIST_CACHE_KEY_PREFIX = "listPictureVOByPage:";
+    private static final int MAX_LOAD_WAIT_ROUNDS = 2;
+
+    /**
+     * 本节点正在加载的键，相同键的并发请求共享同一个加载结果
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> IN_FLIGHT_LOADS = new ConcurrentHashMap<>();
+
+    /**
+     * 后台刷新锁的键前缀，多个节点同时读到软过期的值时只由一个节点刷新
+     */
+    private static final String REFRESH_LOCK_KEY_PREFIX = "refresh:";
+
+    /**
+     * 本节点正在后台刷新的键
+     */
+    private final Set<String> REFRESHING_KEYS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 后台刷新线程池，队列满时放弃本次刷新，下一次读到软过期的值时会再次触发
+     */
+    private final ThreadPoolExecutor refreshExecutor = new ThreadPoolExecutor(2, 4, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(100),
+            ThreadFactoryBuilder.create().setNamePrefix("cache-refresh-").setDaemon(true).build());
+
+    /**
+     * 本地缓存项
+     * 较大的值（编码时已压缩）在本地也保存压缩后的编码，读取时再解码，其他值保存解码后的对象
+     */
+    private static final class CacheEntry {
+
+        /**
+         * 解码后的对象，保存压缩编码时为 null
+         */
+        private final Object value;
+
+        /**
+         * 压缩后的编码，保存对象时为 null
+         */
+        private final byte[] compressedBytes;
+
+        /**
+         * 软过期时间戳（毫秒），超过后仍然返回旧值，同时触发后台刷新
+         */
+        private final long softExpireAt;
+
+        /**
+         * 估算的内存占用（字节）
+         */
+        private final int weight;
+
+        private CacheEntry(Object value, byte[] compressedBytes, long softExpireAt, int weight) {
+            this.value = value;
+            this.compressedBytes = compressedBytes;
+            this.softExpireAt = softExpireAt;
+            this.weight = weight;
+        }
+
+        private boolean isSoftExpired() {
+            return isSoftExpiredWithin(0);
+        }
+
+        /**
+         * 是否在指定时间内软过期
+         */
+        private boolean isSoftExpiredWithin(long aheadMillis) {
+            return System.currentTimeMillis() + aheadMillis >= softExpireAt;
+        }
+    }
+
+    /**
+     * 记录标签：把缓存键加入每个标签的 Set，并保证 Set 的过期时间不短于缓存项
+     */
+    private static final DefaultRedisScript<Long> ADD_TAGS_SCRIPT = new DefaultRedisScript<>(
+            "for i, tagKey in ipairs(KEYS) do " +
+                    "redis.call('SADD', tagKey, ARGV[1]) " +
+                    "if redis.call('TTL', tagKey) < tonumber(ARGV[2]) then " +
+                    "redis.call('EXPIRE', tagKey, ARGV[2]) end " +
+                    "end " +
+                    "return #KEYS",
+            Long.class);
+
+    /**
+     * 锁的值与持有者令牌一致时才删除
+     */
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('DEL', KEYS[1]) " +
+                    "end " +
+                    "return 0",
+            Long.class);
+
+    /**
+     * 取出标签下的全部缓存键并删除标签本身
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> POP_TAGS_SCRIPT = new DefaultRedisScript<>(
+            "local keys = {} " +
+                    "for i, tagKey in ipairs(KEYS) do " +
+                    "for _, member in ipairs(redis.call('SMEMBERS', tagKey)) do table.insert(keys, member) end " +
+                    "redis.call('DEL', tagKey) " +
+                    "end " +
+                    "return keys",
+            List.class);
+
+    /**
+     * 注册本地缓存清除处理器，接收其他节点广播的失效消息
+     */
+    @PostConstruct
+    public void registerLocalCacheEvictor() {
+        cacheInvalidationBroadcaster.setLocalCacheEvictor(new CacheInvalidationBroadcaster.LocalCacheEvictor() {
+            @Override
+            public void evict(Collection<String> keys) {
+                invalidateLocal(keys);
+            }
+
+            @Override
+            public void evictAll() {
+                invalidateLocalAll();
+            }
+        });
+        // 开启 Redis 客户端缓存失效通知时，通过 tracking 连接读取的键由 Redis 推送失效
+        redisClientTracking.setInvalidationListener(new RedisClientTracking.InvalidationListener() {
+            @Override
+            public void invalidate(Collection<String> keys) {
+                invalidateLocal(keys);
+            }
+
+            @Override
+            public void invalidateAll() {
+                invalidateLocalAll();
+            }
+        });
+    }
+
+    /**
+     * 清除本地缓存中的键，先递增失效序号，正在读取这些键的线程不会再把读到的旧值写回本地缓存
+     */
+    private void invalidateLocal(Collection<String> keys) {
+        for (String key : keys) {
+            invalidationSequences.incrementAndGet(invalidationStripe(key));
+        }
+        LOCAL_CACHE.invalidateAll(keys);
+        NAMESPACE_VERSIONS.invalidateAll(keys);
+    }
+
+    /**
+     * 清除全部本地缓存，递增全局失效序号
+     */
+    private void invalidateLocalAll() {
+        invalidationEpoch.incrementAndGet();
+        LOCAL_CACHE.invalidateAll();
+        NAMESPACE_VERSIONS.invalidateAll();
+    }
+
+    private static int invalidationStripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % INVALIDATION_STRIPES;
+    }
+
+    /**
+     * 读取 Redis 之前记录的失效序号（全局序号与键所在分段序号之和，两者都只增不减）
+     * 写回本地缓存前序号发生变化，说明读取期间收到了失效通知，读到的值可能已经过期
+     */
+    private long invalidationStamp(String key) {
+        return invalidationEpoch.get() + invalidationSequences.get(invalidationStripe(key));
+    }
+
+    /**
+     * 从 Redis 读取，开启客户端缓存失效通知时使用 tracking 连接
+     */
+    private byte[] readRedis(String key) {
+        if (redisClientTracking.isActive()) {
+            return redisClientTracking.get(key);
+        }
+        return cacheRedisTemplate.opsForValue().get(key);
+    }
+
+    /**
+     * 从 Redis 批量读取（一次 MGET），返回值与键一一对应
+     */
+    private List<byte[]> readRedis(List<String> keys) {
+        if (redisClientTracking.isActive()) {
+            return redisClientTracking.mget(keys);
+        }
+        return cacheRedisTemplate.opsForValue().multiGet(keys);
+    }
 
     @Override
-    public String get(String key) {
-        // 1. 先从本地缓存中查询
-        String cachedValue = LOCAL_CACHE.getIfPresent(key);
-        if (cachedValue != null) {
-            return cachedValue;
+    public <T> T get(String key, Class<T> type) {
+        return get(key, cacheValueCodec.constructType(type));
+    }
+
+    @Override
+    public <T> T get(String key, TypeReference<T> typeReference) {
+        return get(key, cacheValueCodec.constructType(typeReference.getType()));
+    }
+
+    private <T> T get(String key, JavaType type) {
+        CacheEntry entry = getEntry(key, type);
+        return entry == null ? null : valueOf(key, entry, type);
+    }
+
+    /**
+     * 加载过程中的重复检查，不计入命中统计
+     */
+    private <T> T recheck(String key, JavaType type) {
+        CacheEntry entry = getEntry(key, type, false);
+        return entry == null ? null : valueOf(key, entry, type);
+    }
+
+    private CacheEntry getEntry(String key, JavaType type) {
+        return getEntry(key, type, true);
+    }
+
+    /**
+     * 本地缓存过期时间（纳秒），按访问频率决定
+     */
+    private long localExpireNanos(String key) {
+        int frequency = hotKeyDetector.frequency(key);
+        if (hotKeyDetector.isHot(frequency)) {
+            return HOT_LOCAL_EXPIRE.toNanos();
         }
-        
+        if (hotKeyDetector.isCold(frequency)) {
+            return COLD_LOCAL_EXPIRE.toNanos();
+        }
+        return LOCAL_EXPIRE.toNanos();
+    }
+
+    private CacheEntry getEntry(String key, JavaType type, boolean recordStats) {
+        if (recordStats) {
+            hotKeyDetector.record(key);
+        }
+        // 1. 先从本地缓存中查询，命中时直接返回对象，不需要解析
+        CacheEntry entry = LOCAL_CACHE.getIfPresent(key);
+        if (entry != null) {
+            if (recordStats) {
+                cacheMetrics.recordLocalHit(key);
+            }
+            return entry;
+        }
+
         // 2. 本地缓存未命中，查询 Redis 分布式缓存
-        ValueOperations<String, String> opsForValue = stringRedisTemplate.opsForValue();
-        cachedValue = opsForValue.get(key);
-        if (cachedValue != null) {
-            // 如果缓存命中，更新本地缓存
-            LOCAL_CACHE.put(key, cachedValue);
+        long stamp = invalidationStamp(key);
+        long start = System.nanoTime();
+        entry = decodeEntry(key, readRedis(key), type);
+        if (recordStats) {
+            cacheMetrics.recordRedisLookup(key, System.nanoTime() - start, entry != null);
+        }
+        if (entry == null) {
+            return null;
+        }
+        // 如果缓存命中，更新本地缓存；读取期间收到失效通知时不写入，避免旧值留在本地缓存
+        if (stamp == invalidationStamp(key)) {
+            LOCAL_CACHE.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 由编码结果构建本地缓存项，压缩过的值保存压缩后的编码
+     *
+     * @param value 解码后的对象，保存压缩编码时不使用
+     */
+    private CacheEntry newEntry(Object value, byte[] bytes) {
+        long softExpireAt = cacheValueCodec.readSoftExpireAt(bytes);
+        if (cacheValueCodec.isCompressed(bytes)) {
+            return new CacheEntry(null, bytes, softExpireAt, bytes.length);
+        }
+        return new CacheEntry(value, null, softExpireAt, bytes.length * OBJECT_WEIGHT_FACTOR);
+    }
+
+    /**
+     * 缓存项的值，压缩保存的值在这里解码；解码失败时清除缓存并返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T valueOf(String key, CacheEntry entry, JavaType type) {
+        if (entry.compressedBytes == null) {
+            return (T) entry.value;
+        }
+        try {
+            return cacheValueCodec.decode(entry.compressedBytes, type);
+        } catch (Exception e) {
+            log.warn("缓存值解码失败，key: {}", key, e);
+            LOCAL_CACHE.invalidate(key);
+            cacheRedisTemplate.delete(key);
+            return null;
+        }
+    }
+
+    /**
+     * 解码 Redis 中的缓存值，不存在或无法解码时返回 null
+     * 压缩过的值只校验格式，读取时再解码
+     */
+    private CacheEntry decodeEntry(String key, byte[] bytes, JavaType type) {
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            if (cacheValueCodec.isCompressed(bytes)) {
+                return newEntry(null, bytes);
+            }
+            return newEntry(cacheValueCodec.decode(bytes, type), bytes);
+        } catch (Exception e) {
+            // 无法解码（如旧格式的缓存），当作未命中并删除
+            log.warn("缓存值解码失败，key: {}", key, e);
+            cacheRedisTemplate.delete(key);
+            return null;
         }
-        return cachedValue;
     }
 
     @Override
-    public void set(String key, String value, Integer expireSeconds) {
-        if (expireSeconds == null) {
-            expireSeconds = DEFAULT_EXPIRE_SECONDS;
+    public <T> Map<String, T> multiGet(Collection<String> keys, Class<T> type) {
+        Map<String, T> result = new HashMap<>();
+        if (CollUtil.isEmpty(keys)) {
+            return result;
         }
-        
-        // 添加随机时间，防止缓存雪崩
-        int randomExpire = expireSeconds + RandomUtil.randomInt(0, expireSeconds / 2);
-        
-        // 1. 写入 Redis
-        ValueOperations<String, String> opsForValue = stringRedisTemplate.opsForValue();
-        opsForValue.set(key, value, randomExpire, TimeUnit.SECONDS);
-        
+        JavaType javaType = cacheValueCodec.constructType(type);
+        // 1. 先从本地缓存中查询
+        List<String> redisKeys = new ArrayList<>();
+        for (String key : keys) {
+            hotKeyDetector.record(key);
+            CacheEntry entry = LOCAL_CACHE.getIfPresent(key);
+            T value = entry == null ? null : valueOf(key, entry, javaType);
+            if (value != null) {
+                cacheMetrics.recordLocalHit(key);
+                result.put(key, value);
+            } else {
+                redisKeys.add(key);
+            }
+        }
+        if (redisKeys.isEmpty()) {
+            return result;
+        }
+
+        // 2. 本地缓存未命中的键，一次 MGET 查询 Redis，耗时平均计入每个键
+        long[] stamps = new long[redisKeys.size()];
+        for (int i = 0; i < redisKeys.size(); i++) {
+            stamps[i] = invalidationStamp(redisKeys.get(i));
+        }
+        long start = System.nanoTime();
+        List<byte[]> values = readRedis(redisKeys);
+        long nanosPerKey = (System.nanoTime() - start) / redisKeys.size();
+        for (int i = 0; i < redisKeys.size(); i++) {
+            String key = redisKeys.get(i);
+            CacheEntry entry = decodeEntry(key, values == null ? null : values.get(i), javaType);
+            T value = entry == null ? null : valueOf(key, entry, javaType);
+            cacheMetrics.recordRedisLookup(key, nanosPerKey, value != null);
+            if (value != null) {
+                if (stamps[i] == invalidationStamp(key)) {
+                    LOCAL_CACHE.put(key, entry);
+                }
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void multiSet(Map<String, ?> values, Integer expireSeconds) {
+        if (MapUtil.isEmpty(values)) {
+            return;
+        }
+        // 1. 编码后通过管道写入 Redis，每个键单独计算过期时间
+        Map<String, byte[]> encodedValues = new LinkedHashMap<>();
+        values.forEach((key, value) -> {
+            byte[] bytes = cacheValueCodec.encode(value, NO_SOFT_EXPIRE);
+            encodedValues.put(key, bytes);
+            cacheMetrics.recordWrite(key, bytes.length, cacheValueCodec.uncompressedLength(bytes));
+        });
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            encodedValues.forEach((key, bytes) -> connection.stringCommands().set(
+                    key.getBytes(StandardCharsets.UTF_8), bytes,
+                    Expiration.seconds(redisExpireSeconds(key, expireSeconds)), RedisStringCommands.SetOption.upsert()));
+            return null;
+        });
+
         // 2. 写入本地缓存
-        LOCAL_CACHE.put(key, value);
+        values.forEach((key, value) -> LOCAL_CACHE.put(key, newEntry(value, encodedValues.get(key))));
+    }
+
+    /**
+     * Redis 中的过期时间（秒）
+     * 冷键（最近只访问过一次）只保留一半时间，再加上随机时间，防止缓存雪崩
+     */
+    private int redisExpireSeconds(String key, Integer expireSeconds) {
+        int expire = expireSeconds == null ? DEFAULT_EXPIRE_SECONDS : expireSeconds;
+        if (hotKeyDetector.isCold(hotKeyDetector.frequency(key))) {
+            expire = Math.max(expire / 2, MIN_EXPIRE_SECONDS);
+        }
+        return expire + RandomUtil.randomInt(0, expire / 2);
     }
 
     @Override
-    public void delete(String key) {
-        // 1. 删除本地缓存
-        LOCAL_CACHE.invalidate(key);
+    public void set(String key, Object value, Integer expireSeconds) {
+        set(key, value, expireSeconds, null);
+    }
+
+    @Override
+    public void set(String key, Object value, Integer expireSeconds, Collection<String> tags) {
+        set(key, value, null, expireSeconds, tags);
+    }
+
+    private void set(String key, Object value, Integer refreshSeconds, Integer expireSeconds,
+                     Collection<String> tags) {
+        // 冷键缩短过期时间，并添加随机时间，防止缓存雪崩
+        int randomExpire = redisExpireSeconds(key, expireSeconds);
+
+        long softExpireAt = refreshSeconds == null ? NO_SOFT_EXPIRE
+                : System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(refreshSeconds);
+
+        // 1. 编码后写入 Redis
+        byte[] bytes = cacheValueCodec.encode(value, softExpireAt);
+        cacheRedisTemplate.opsForValue().set(key, bytes, randomExpire, TimeUnit.SECONDS);
+        cacheMetrics.recordWrite(key, bytes.length, cacheValueCodec.uncompressedLength(bytes));
         
-        // 2. 删除 Redis 缓存
-        stringRedisTemplate.delete(key);
+        // 2. 写入本地缓存
+        LOCAL_CACHE.put(key, newEntry(value, bytes));
+
+        // 3. 记录依赖标签
+        if (CollUtil.isNotEmpty(tags)) {
+            try {
+                List<String> tagKeys = new ArrayList<>(tags.size());
+                for (String tag : tags) {
+                    tagKeys.add(TAG_KEY_PREFIX + tag);
+                }
+                stringRedisTemplate.execute(ADD_TAGS_SCRIPT, tagKeys, key, String.valueOf(randomExpire));
+            } catch (Exception e) {
+                // 标签记录失败时删除缓存，避免出现无法按标签清除的缓存项
+                log.error("记录缓存标签失败，key: {}", key, e);
+                delete(key);
+            }
+        }
     }
 
     @Override
-    public void deleteByPattern(String pattern) {
-        try {
-            // 1. 清除本地缓存（全部清除，因为无法精确匹配）
-            // 注意：这里为了简单，清除所有本地缓存，实际可以维护一个key列表
-            
-            // 2. 使用SCAN代替KEYS，避免阻塞Redis
-            Set<String> keys = scanKeys(pattern);
-            if (keys != null && !keys.isEmpty()) {
-                // 分批删除，避免一次性删除过多键
-                int batchSize = 100;
-                Set<String> batch = new HashSet<>();
-                for (String key : keys) {
-                    batch.add(key);
-                    LOCAL_CACHE.invalidate(key); // 同时清除本地缓存
-                    if (batch.size() >= batchSize) {
-                        stringRedisTemplate.delete(batch);
-                        batch.clear();
-                    }
+    public <T> T getOrLoad(String key, TypeReference<T> typeReference, Integer expireSeconds,
+                           Supplier<T> loader, Function<T, Collection<String>> tagger) {
+        return getOrLoad(key, typeReference, null, expireSeconds, loader, tagger);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(String key, TypeReference<T> typeReference, Integer refreshSeconds,
+                           Integer expireSeconds, Supplier<T> loader, Function<T, Collection<String>> tagger) {
+        JavaType type = cacheValueCodec.constructType(typeReference.getType());
+        CacheEntry entry = getEntry(key, type);
+        T cachedValue = entry == null ? null : valueOf(key, entry, type);
+        if (cachedValue != null) {
+            // 超过软过期时间，先返回旧值，由后台刷新；热点键在软过期之前就提前刷新
+            long aheadMillis = hotKeyDetector.isHot(hotKeyDetector.frequency(key)) ? HOT_REFRESH_AHEAD_MILLIS : 0;
+            if (entry.isSoftExpiredWithin(aheadMillis)) {
+                refreshAsync(key, refreshSeconds, expireSeconds, loader, tagger);
+            }
+            return cachedValue;
+        }
+
+        // 同一节点内相同键只加载一次，其他请求等待同一个结果
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = IN_FLIGHT_LOADS.putIfAbsent(key, future);
+        if (inFlight != null) {
+            try {
+                return (T) inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
                 }
-                if (!batch.isEmpty()) {
-                    stringRedisTemplate.delete(batch);
+                throw e;
+            }
+        }
+        try {
+            T value = loadAcrossNodes(key, type, refreshSeconds, expireSeconds, loader, tagger);
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            IN_FLIGHT_LOADS.remove(key, future);
+        }
+    }
+
+    /**
+     * 节点之间通过分布式锁协调加载，没有拿到锁的节点等待加载完成的通知
+     */
+    private <T> T loadAcrossNodes(String key, JavaType type, Integer refreshSeconds, Integer expireSeconds,
+                                  Supplier<T> loader, Function<T, Collection<String>> tagger) {
+        String lockKey = LOAD_LOCK_KEY_PREFIX + key;
+        for (int round = 0; round < MAX_LOAD_WAIT_ROUNDS; round++) {
+            // 先登记等待再抢锁，避免在两步之间错过通知
+            CompletableFuture<Void> waiter = cacheLoadNotifier.register(key);
+            String lockToken = tryLock(lockKey, LOAD_LOCK_TIMEOUT_SECONDS);
+            if (lockToken != null) {
+                cacheLoadNotifier.unregister(key, waiter);
+                try {
+                    // 双重检查，其他节点可能刚刚写入
+                    T value = recheck(key, type);
+                    return value != null ? value : loadAndSet(key, refreshSeconds, expireSeconds, loader, tagger);
+                } finally {
+                    releaseLock(lockKey, lockToken);
+                    cacheLoadNotifier.notifyLoaded(key);
                 }
-                log.info("清除缓存，模式: {}，共 {} 个缓存项", pattern, keys.size());
             }
-        } catch (Exception e) {
-            log.error("清除缓存失败，模式: {}", pattern, e);
+            // 其他节点正在加载，可能在抢锁之前已经写入
+            T value = recheck(key, type);
+            if (value != null) {
+                cacheLoadNotifier.unregister(key, waiter);
+                return value;
+            }
+            cacheLoadNotifier.await(key, waiter, TimeUnit.SECONDS.toMillis(LOAD_LOCK_TIMEOUT_SECONDS));
+            value = recheck(key, type);
+            if (value != null) {
+                return value;
+            }
+            // 收到通知但没有缓存（加载失败或结果为空），或等待超时，下一轮重新抢锁
         }
+        log.warn("等待其他节点加载缓存超时，直接加载，key: {}", key);
+        return loadAndSet(key, refreshSeconds, expireSeconds, loader, tagger);
+    }
+
+    private <T> T loadAndSet(String key, Integer refreshSeconds, Integer expireSeconds, Supplier<T> loader,
+                             Function<T, Collection<String>> tagger) {
+        // 回源加载，记录耗时
+        long start = System.nanoTime();
+        T value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException e) {
+            cacheMetrics.recordLoad(key, System.nanoTime() - start, false);
+            throw e;
+        }
+        cacheMetrics.recordLoad(key, System.nanoTime() - start, true);
+        if (value != null) {
+            set(key, value, refreshSeconds, expireSeconds, tagger == null ? null : tagger.apply(value));
+        }
+        return value;
     }
 
     /**
-     * 使用SCAN命令扫描匹配的键（非阻塞）
-     * @param pattern 匹配模式
-     * @return 匹配的键集合
+     * 后台刷新缓存，同一个键同时只有一个刷新任务
      */
-    private Set<String> scanKeys(String pattern) {
-        Set<String> keys = new HashSet<>();
+    private <T> void refreshAsync(String key, Integer refreshSeconds, Integer expireSeconds, Supplier<T> loader,
+                                  Function<T, Collection<String>> tagger) {
+        if (!REFRESHING_KEYS.add(key)) {
+            return;
+        }
         try {
-            ScanOptions options = ScanOptions.scanOptions()
-                    .match(pattern)
-                    .count(100) // 每次扫描100个键
-                    .build();
-            
-            try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
-                while (cursor.hasNext()) {
-                    keys.add(cursor.next());
+            refreshExecutor.execute(() -> {
+                String lockKey = REFRESH_LOCK_KEY_PREFIX + key;
+                String lockToken = null;
+                try {
+                    lockToken = tryLock(lockKey, LOAD_LOCK_TIMEOUT_SECONDS);
+                    if (lockToken != null) {
+                        loadAndSet(key, refreshSeconds, expireSeconds, loader, tagger);
+                        // 其他节点的本地缓存中还是旧值，通知它们重新读取 Redis
+                        cacheInvalidationBroadcaster.publish(Collections.singletonList(key));
+                    }
+                } catch (Exception e) {
+                    log.error("后台刷新缓存失败，key: {}", key, e);
+                } finally {
+                    if (lockToken != null) {
+                        releaseLock(lockKey, lockToken);
+                    }
+                    REFRESHING_KEYS.remove(key);
                 }
-            }
-        } catch (Exception e) {
-            log.error("扫描Redis键失败", e);
+            });
+        } catch (RejectedExecutionException e) {
+            // 刷新任务过多，放弃本次刷新，继续返回旧值
+            REFRESHING_KEYS.remove(key);
         }
-        return keys;
     }
 
     @Override
-    public String getLocalCache(String key) {
-        return LOCAL_CACHE.getIfPresent(key);
+    public void delete(String key) {
+        // 1. 先删除 Redis 缓存：否则收到通知的节点（或本节点的其他线程）可能从 Redis 读回旧值放入本地缓存
+        stringRedisTemplate.delete(key);
+
+        // 2. 再删除本地缓存，并通知其他节点
+        LOCAL_CACHE.invalidate(key);
+        cacheInvalidationBroadcaster.publish(Collections.singletonList(key));
     }
 
     @Override
-    public void putLocalCache(String key, String value) {
-        LOCAL_CACHE.put(key, value);
+    public String versionedKey(String namespace, String key) {
+        return key + ":v" + getNamespaceVersion(namespace);
+    }
+
+    /**
+     * 获取命名空间当前版本号，没有记录时为 0
+     */
+    private long getNamespaceVersion(String namespace) {
+        return NAMESPACE_VERSIONS.get(NAMESPACE_VERSION_KEY_PREFIX + namespace, versionKey -> {
+            byte[] version = readRedis(versionKey);
+            return version == null ? 0L : Long.parseLong(new String(version, StandardCharsets.UTF_8));
+        });
     }
 
     @Override
-    public boolean tryLock(String lockKey, long timeout) {
+    public void invalidateNamespace(String namespace) {
+        String versionKey = NAMESPACE_VERSION_KEY_PREFIX + namespace;
+        Long version = stringRedisTemplate.opsForValue().increment(versionKey);
+        // 版本号的过期时间远大于缓存项的过期时间，过期后从 0 重新开始也不会读到旧缓存
+        stringRedisTemplate.expire(versionKey, NAMESPACE_VERSION_EXPIRE);
+        // 清除本地记录的版本号，并通知其他节点
+        NAMESPACE_VERSIONS.invalidate(versionKey);
+        cacheInvalidationBroadcaster.publish(Collections.singletonList(versionKey));
+        log.info("命名空间缓存失效，命名空间: {}，新版本: {}", namespace, version);
+    }
+
+    @Override
+    public String tryLock(String lockKey, long timeout) {
         String fullLockKey = LOCK_KEY_PREFIX + lockKey;
+        // 锁的值是持有者令牌，释放时只删除自己持有的锁
+        String token = IdUtil.fastSimpleUUID();
         try {
             // 使用SET NX EX实现分布式锁
             Boolean result = stringRedisTemplate.opsForValue()
-                    .setIfAbsent(fullLockKey, "1", timeout, TimeUnit.SECONDS);
-            return Boolean.TRUE.equals(result);
+                    .setIfAbsent(fullLockKey, token, timeout, TimeUnit.SECONDS);
+            return Boolean.TRUE.equals(result) ? token : null;
         } catch (Exception e) {
             log.error("获取分布式锁失败，lockKey: {}", lockKey, e);
-            return false;
+            return null;
         }
     }
 
     @Override
-    public void releaseLock(String lockKey) {
+    public void releaseLock(String lockKey, String token) {
         String fullLockKey = LOCK_KEY_PREFIX + lockKey;
         try {
-            stringRedisTemplate.delete(fullLockKey);
+            // 比较令牌后再删除：锁已超时并被其他节点获取时，不能把别人的锁删掉
+            stringRedisTemplate.execute(RELEASE_LOCK_SCRIPT, Collections.singletonList(fullLockKey), token);
         } catch (Exception e) {
             log.error("释放分布式锁失败，lockKey: {}", lockKey, e);
         }
     }
 
+    /**
+     * 应用关闭时停止后台刷新
+     */
+    @PreDestroy
+    public void shutdownRefreshExecutor() {
+        refreshExecutor.shutdownNow();
+    }
+
     @Override
-    public void clearPictureCache() {
-        // 异步清除缓存，避免阻塞主流程
-        CompletableFuture.runAsync(() -> {
-            try {
-                // 1. 清除本地缓存（快速操作）
-                LOCAL_CACHE.invalidateAll();
-                
-                // 2. 使用SCAN代替KEYS，避免阻塞Redis
-                Set<String> keys = scanKeys(PICTURE_LIST_CACHE_KEY_PREFIX + "*");
-                if (keys != null && !keys.isEmpty()) {
-                    // 分批删除，避免一次性删除过多键
-                    int batchSize = 100;
-                    Set<String> batch = new HashSet<>();
-                    int count = 0;
-                    for (String key : keys) {
-                        batch.add(key);
-                        if (batch.size() >= batchSize) {
-                            stringRedisTemplate.delete(batch);
-                            count += batch.size();
-                            batch.clear();
-                        }
-                    }
-                    if (!batch.isEmpty()) {
-                        stringRedisTemplate.delete(batch);
-                        count += batch.size();
-                    }
-                    log.info("清除图片列表缓存，共 {} 个缓存项", count);
-                }
-            } catch (Exception e) {
-                log.error("清除Redis缓存失败", e);
+    public CacheStatsVO getCacheStats() {
+        CacheStats stats = LOCAL_CACHE.stats();
+        CacheStatsVO cacheStatsVO = new CacheStatsVO();
+        cacheStatsVO.setLocalSize(LOCAL_CACHE.estimatedSize());
+        cacheStatsVO.setLocalHitRate(stats.hitRate());
+        cacheStatsVO.setLocalEvictionCount(stats.evictionCount());
+        cacheStatsVO.setLocalWeightBytes(LOCAL_CACHE.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L));
+        cacheStatsVO.setLocalMaxWeightBytes(LOCAL_MAX_WEIGHT_BYTES);
+        cacheStatsVO.setNamespaces(cacheMetrics.snapshot());
+        return cacheStatsVO;
+    }
+
+    @Override
+    public void invalidateTags(Collection<String> tags) {
+        if (CollUtil.isEmpty(tags)) {
+            return;
+        }
+        try {
+            List<String> tagKeys = new ArrayList<>(tags.size());
+            for (String tag : tags) {
+                tagKeys.add(TAG_KEY_PREFIX + tag);
             }
-        });
+            @SuppressWarnings("unchecked")
+            List<String> keys = stringRedisTemplate.execute(POP_TAGS_SCRIPT, tagKeys);
+            if (CollUtil.isEmpty(keys)) {
+                return;
+            }
+            Set<String> keySet = new HashSet<>(keys);
+            // 1. 先清除 Redis 缓存，收到通知的节点重新读取时不会再读到旧值
+            stringRedisTemplate.unlink(keySet);
+            // 2. 再清除本地缓存，并通知其他节点
+            LOCAL_CACHE.invalidateAll(keySet);
+            cacheInvalidationBroadcaster.publish(keySet);
+            log.info("按标签清除缓存，标签: {}，共 {} 个缓存项", tags, keySet.size());
+        } catch (Exception e) {
+            log.error("按标签清除缓存失败，标签: {}", tags, e);
+            // 无法确定受影响的缓存键，退化为清空本地缓存
+            LOCAL_CACHE.invalidateAll();
+            cacheInvalidationBroadcaster.publishAll();
+        }
     }
 }
-
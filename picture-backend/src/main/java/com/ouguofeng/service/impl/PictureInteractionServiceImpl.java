@@ -0,0 +1,346 @@
+package com.ouguofeng.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.ouguofeng.common.CursorPage;
+import com.ouguofeng.exception.BusinessException;
+import com.ouguofeng.exception.ErrorCode;
+import com.ouguofeng.exception.ThrowUtils;
+import com.ouguofeng.manager.counter.PictureCounterManager;
+import com.ouguofeng.manager.hot.HotPictureManager;
+import com.ouguofeng.manager.interaction.InteractionWrite;
+import com.ouguofeng.manager.interaction.InteractionWritePipeline;
+import com.ouguofeng.manager.interaction.PictureInteractionManager;
+import com.ouguofeng.model.dto.picture.PictureInteractionQueryRequest;
+import com.ouguofeng.model.entity.Picture;
+import com.ouguofeng.model.entity.User;
+import com.ouguofeng.model.vo.PictureInteractionResultVO;
+import com.ouguofeng.model.vo.PictureVO;
+import com.ouguofeng.service.PictureService;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 图片点赞、收藏的公共实现
+ * 单个操作交给组提交管道，批量操作一次多行插入或批量删除，列表按互动时间倒序并支持游标分页；
+ * 记录变化后的计数、用户集合和热门排行更新都在写入事务中注册，提交之后执行
+ *
+ * @param <M> 互动表的 Mapper
+ * @param <T> 互动记录（点赞或收藏）
+ */
+public abstract class PictureInteractionServiceImpl<M extends BaseMapper<T>, T> extends ServiceImpl<M, T> {
+
+    /**
+     * 批量操作一次最多处理的图片数
+     */
+    private static final int BATCH_MAX_SIZE = 100;
+
+    @Resource
+    protected PictureService pictureService;
+
+    @Resource
+    protected PictureCounterManager pictureCounterManager;
+
+    @Resource
+    protected PictureInteractionManager pictureInteractionManager;
+
+    @Resource
+    protected HotPictureManager hotPictureManager;
+
+    @Resource
+    private InteractionWritePipeline interactionWritePipeline;
+
+    /**
+     * 操作名称，用于提示信息（点赞、收藏）
+     */
+    protected abstract String actionName();
+
+    /**
+     * 新增记录的管道写入类型
+     */
+    protected abstract InteractionWrite.Type addType();
+
+    /**
+     * 删除记录的管道写入类型
+     */
+    protected abstract InteractionWrite.Type removeType();
+
+    /**
+     * 创建一条互动记录
+     */
+    protected abstract T newRecord(long id, long pictureId, long userId);
+
+    protected abstract Long getId(T record);
+
+    protected abstract Long getPictureId(T record);
+
+    protected abstract Date getCreateTime(T record);
+
+    /**
+     * 一条多行插入，已经存在的记录由唯一索引忽略
+     *
+     * @return 实际新增的记录数
+     */
+    protected abstract int insertIgnoreBatch(List<T> records);
+
+    /**
+     * 记录新增之后更新计数、用户集合和热门排行（在当前事务提交之后执行）
+     */
+    protected abstract void onAdded(long userId, List<Long> pictureIds);
+
+    /**
+     * 记录删除之后更新计数、用户集合和热门排行（在当前事务提交之后执行）
+     *
+     * @param createTimeMap 图片 id 到被删除记录的创建时间，用于撤销当时计入的热度
+     */
+    protected abstract void onRemoved(long userId, Map<Long, Date> createTimeMap);
+
+    /**
+     * 新增一条记录
+     */
+    protected boolean addInteraction(long pictureId, User loginUser) {
+        // 交给组提交管道：与其他请求的写入合并为一条多行插入，提交之后返回；图片不存在或记录已经存在时不插入
+        // 生效时在写入事务中注册提交之后的更新，等待超时返回时也不会丢失
+        long userId = loginUser.getId();
+        boolean added = interactionWritePipeline.write(addType(), pictureId, userId,
+                write -> onAdded(userId, Collections.singletonList(pictureId)));
+        if (!added) {
+            // 只有失败时才区分原因
+            ThrowUtils.throwIf(pictureService.getById(pictureId) == null, ErrorCode.NOT_FOUND_ERROR, "图片不存在");
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "已经" + actionName() + "过了");
+        }
+        return true;
+    }
+
+    /**
+     * 删除一条记录
+     */
+    protected boolean removeInteraction(long pictureId, User loginUser) {
+        // 交给组提交管道：与其他请求的删除合并为一次批量删除，根据结果判断记录是否存在
+        long userId = loginUser.getId();
+        boolean removed = interactionWritePipeline.write(removeType(), pictureId, userId,
+                write -> onRemoved(userId, Collections.singletonMap(pictureId, write.getRemovedCreateTime())));
+        if (!removed) {
+            ThrowUtils.throwIf(pictureService.getById(pictureId) == null, ErrorCode.NOT_FOUND_ERROR, "图片不存在");
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "还未" + actionName());
+        }
+        return true;
+    }
+
+    /**
+     * 批量新增（调用方需要开启事务，计数等更新在提交之后执行）
+     */
+    protected List<PictureInteractionResultVO> addInteractionByBatch(List<Long> pictureIdList, User loginUser) {
+        List<Long> pictureIds = distinctPictureIds(pictureIdList);
+        long userId = loginUser.getId();
+        Map<Long, String> failureMap = new HashMap<>();
+        String existsMessage = "已经" + actionName() + "过了";
+
+        // 一次查询过滤不存在的图片，一次查询过滤已经有记录的图片
+        Set<Long> existingPictureIds = listExistingPictureIds(pictureIds);
+        Set<Long> addedPictureIds = listAddedPictureIds(userId, pictureIds);
+        List<T> recordList = new ArrayList<>();
+        for (Long pictureId : pictureIds) {
+            if (!existingPictureIds.contains(pictureId)) {
+                failureMap.put(pictureId, "图片不存在");
+            } else if (addedPictureIds.contains(pictureId)) {
+                failureMap.put(pictureId, existsMessage);
+            } else {
+                recordList.add(newRecord(IdWorker.getId(), pictureId, userId));
+            }
+        }
+        if (recordList.isEmpty()) {
+            return buildResults(pictureIds, failureMap);
+        }
+
+        // 一条多行插入，并发写入的记录由唯一索引忽略
+        int affectedRows = insertIgnoreBatch(recordList);
+        List<Long> insertedPictureIds = recordList.stream()
+                .map(this::getPictureId)
+                .collect(Collectors.toList());
+        if (affectedRows != recordList.size()) {
+            // 部分记录被忽略，按本次生成的 id 查出实际插入的记录
+            List<Long> idList = recordList.stream().map(this::getId).collect(Collectors.toList());
+            Set<Long> insertedPictureIdSet = this.listByIds(idList).stream()
+                    .map(this::getPictureId)
+                    .collect(Collectors.toSet());
+            insertedPictureIds = insertedPictureIds.stream()
+                    .filter(insertedPictureIdSet::contains)
+                    .collect(Collectors.toList());
+            for (Long pictureId : pictureIds) {
+                if (!failureMap.containsKey(pictureId) && !insertedPictureIdSet.contains(pictureId)) {
+                    failureMap.put(pictureId, existsMessage);
+                }
+            }
+        }
+
+        // 一次脚本调用更新所有图片的计数，一次更新用户集合和热门排行，都在事务提交之后执行
+        onAdded(userId, insertedPictureIds);
+
+        return buildResults(pictureIds, failureMap);
+    }
+
+    /**
+     * 批量删除（调用方需要开启事务，锁定的记录在提交时释放）
+     */
+    protected List<PictureInteractionResultVO> removeInteractionByBatch(List<Long> pictureIdList, User loginUser) {
+        List<Long> pictureIds = distinctPictureIds(pictureIdList);
+        long userId = loginUser.getId();
+        Map<Long, String> failureMap = new HashMap<>();
+
+        // 锁定要删除的记录，保证并发删除时每条记录只被计数一次
+        QueryWrapper<T> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "pictureId", "createTime");
+        queryWrapper.eq("userId", userId);
+        queryWrapper.in("pictureId", pictureIds);
+        queryWrapper.last("for update");
+        List<T> recordList = this.list(queryWrapper);
+        if (!recordList.isEmpty()) {
+            this.removeByIds(recordList.stream().map(this::getId).collect(Collectors.toList()));
+        }
+        Map<Long, T> deletedRecordMap = recordList.stream()
+                .collect(Collectors.toMap(this::getPictureId, record -> record));
+        // 按请求顺序记录被删除记录的创建时间
+        Map<Long, Date> deletedCreateTimeMap = new LinkedHashMap<>();
+        List<Long> missingPictureIds = new ArrayList<>();
+        for (Long pictureId : pictureIds) {
+            T deletedRecord = deletedRecordMap.get(pictureId);
+            if (deletedRecord != null) {
+                deletedCreateTimeMap.put(pictureId, getCreateTime(deletedRecord));
+            } else {
+                missingPictureIds.add(pictureId);
+            }
+        }
+        if (!missingPictureIds.isEmpty()) {
+            // 只有失败时才区分原因
+            Set<Long> existingPictureIds = listExistingPictureIds(missingPictureIds);
+            for (Long pictureId : missingPictureIds) {
+                failureMap.put(pictureId, existingPictureIds.contains(pictureId) ? "还未" + actionName() : "图片不存在");
+            }
+        }
+
+        // 计数、用户集合和热门排行都在事务提交之后更新，回滚时不变
+        onRemoved(userId, deletedCreateTimeMap);
+
+        return buildResults(pictureIds, failureMap);
+    }
+
+    /**
+     * 分页获取用户有记录的图片，按记录时间倒序
+     */
+    protected Page<PictureVO> listInteractedPictureByPage(PictureInteractionQueryRequest pictureInteractionQueryRequest,
+                                                          HttpServletRequest request) {
+        long current = pictureInteractionQueryRequest.getCurrent();
+        long size = pictureInteractionQueryRequest.getPageSize();
+        Long userId = pictureInteractionQueryRequest.getUserId();
+        String cursor = pictureInteractionQueryRequest.getCursor();
+
+        ThrowUtils.throwIf(userId == null || userId <= 0, ErrorCode.PARAMS_ERROR, "用户id不能为空");
+
+        // 查询用户有记录的图片id列表，按记录时间倒序，使用索引 idx_userId_createTime
+        QueryWrapper<T> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "pictureId", "createTime");
+        queryWrapper.eq("userId", userId);
+        Page<T> recordPage;
+        boolean cursorMode = cursor != null;
+        if (cursorMode) {
+            // 游标分页：从上一页最后一条记录（创建时间和 id）之后继续，不扫描和跳过前面的记录；
+            // 游标本身包含排序值，上一页的记录被删除后仍然可以继续翻页
+            long[] cursorValues = CursorPage.parseCursor(cursor);
+            ThrowUtils.throwIf(cursorValues == null, ErrorCode.PARAMS_ERROR, "游标无效");
+            Date lastCreateTime = new Date(cursorValues[0]);
+            long lastId = cursorValues[1];
+            queryWrapper.and(wrapper -> wrapper.lt("createTime", lastCreateTime)
+                    .or(orWrapper -> orWrapper.eq("createTime", lastCreateTime).lt("id", lastId)));
+            current = 1;
+            // 多查一条判断是否还有下一页
+            recordPage = new Page<>(current, size + 1, false);
+        } else {
+            recordPage = new Page<>(current, size);
+        }
+        queryWrapper.orderByDesc("createTime", "id");
+        recordPage = this.page(recordPage, queryWrapper);
+
+        List<T> recordList = recordPage.getRecords();
+        boolean hasMore = cursorMode
+                ? recordList.size() > size
+                : current * size < recordPage.getTotal();
+        if (cursorMode && hasMore) {
+            recordList = recordList.subList(0, (int) size);
+        }
+        if (recordList.isEmpty()) {
+            return new CursorPage<>(current, size, recordPage.getTotal(), new ArrayList<>(), false, null);
+        }
+
+        // 获取图片id列表（保持记录时间顺序）
+        List<Long> pictureIdList = recordList.stream()
+                .map(this::getPictureId)
+                .collect(Collectors.toList());
+
+        // 批量获取图片信息：缓存批量读取，创建用户一次查询，点赞和收藏状态一次判断
+        List<PictureVO> pictureVOList = pictureService.listPictureVOByIds(pictureIdList, request);
+
+        // 构造分页结果，游标取本页最后一条记录（图片已经删除时也有效）
+        T lastRecord = recordList.get(recordList.size() - 1);
+        return new CursorPage<>(current, size, recordPage.getTotal(), pictureVOList, hasMore,
+                CursorPage.toCursor(getCreateTime(lastRecord), getId(lastRecord)));
+    }
+
+    /**
+     * 校验并去重批量请求中的图片 id，保持请求顺序
+     */
+    private List<Long> distinctPictureIds(List<Long> pictureIdList) {
+        ThrowUtils.throwIf(CollUtil.isEmpty(pictureIdList), ErrorCode.PARAMS_ERROR, "图片id列表不能为空");
+        List<Long> pictureIds = pictureIdList.stream()
+                .filter(pictureId -> pictureId != null && pictureId > 0)
+                .distinct()
+                .collect(Collectors.toList());
+        ThrowUtils.throwIf(pictureIds.isEmpty(), ErrorCode.PARAMS_ERROR, "图片id列表不能为空");
+        ThrowUtils.throwIf(pictureIds.size() > BATCH_MAX_SIZE, ErrorCode.PARAMS_ERROR,
+                "最多" + BATCH_MAX_SIZE + "张图片");
+        return pictureIds;
+    }
+
+    /**
+     * 查询存在（未删除）的图片 id
+     */
+    private Set<Long> listExistingPictureIds(List<Long> pictureIds) {
+        QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id");
+        queryWrapper.in("id", pictureIds);
+        return new HashSet<>(pictureService.listObjs(queryWrapper, id -> ((Number) id).longValue()));
+    }
+
+    /**
+     * 查询用户已经有记录的图片 id
+     */
+    private Set<Long> listAddedPictureIds(long userId, List<Long> pictureIds) {
+        QueryWrapper<T> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("pictureId");
+        queryWrapper.eq("userId", userId);
+        queryWrapper.in("pictureId", pictureIds);
+        return new HashSet<>(this.listObjs(queryWrapper, id -> ((Number) id).longValue()));
+    }
+
+    private List<PictureInteractionResultVO> buildResults(List<Long> pictureIds, Map<Long, String> failureMap) {
+        return pictureIds.stream()
+                .map(pictureId -> new PictureInteractionResultVO(pictureId,
+                        !failureMap.containsKey(pictureId), failureMap.get(pictureId)))
+                .collect(Collectors.toList());
+    }
+}
@@ -1,27 +1,22 @@
 package com.ouguofeng.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
-import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.ouguofeng.exception.BusinessException;
-import com.ouguofeng.exception.ErrorCode;
-import com.ouguofeng.exception.ThrowUtils;
+import com.ouguofeng.manager.interaction.InteractionWrite;
 import com.ouguofeng.mapper.PictureLikeMapper;
 import com.ouguofeng.model.dto.picture.PictureInteractionQueryRequest;
-import com.ouguofeng.model.entity.Picture;
 import com.ouguofeng.model.entity.PictureLike;
 import com.ouguofeng.model.entity.User;
+import com.ouguofeng.model.vo.PictureInteractionResultVO;
 import com.ouguofeng.model.vo.PictureVO;
 import com.ouguofeng.service.PictureLikeService;
-import com.ouguofeng.service.PictureService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * @author 20571
@@ -30,126 +25,98 @@ import java.util.stream.Collectors;
  */
 @Service
 @Slf4j
-public class PictureLikeServiceImpl extends ServiceImpl<PictureLikeMapper, PictureLike>
+public class PictureLikeServiceImpl extends PictureInteractionServiceImpl<PictureLikeMapper, PictureLike>
         implements PictureLikeService {
 
-    @Resource
-    private PictureService pictureService;
+    @Override
+    public boolean likePicture(long pictureId, User loginUser) {
+        return addInteraction(pictureId, loginUser);
+    }
+
+    @Override
+    public boolean unlikePicture(long pictureId, User loginUser) {
+        return removeInteraction(pictureId, loginUser);
+    }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public boolean likePicture(long pictureId, User loginUser) {
-        // 判断图片是否存在
-        Picture picture = pictureService.getById(pictureId);
-        ThrowUtils.throwIf(picture == null, ErrorCode.NOT_FOUND_ERROR, "图片不存在");
-
-        // 判断是否已经点赞
-        long userId = loginUser.getId();
-        QueryWrapper<PictureLike> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("pictureId", pictureId);
-        queryWrapper.eq("userId", userId);
-        PictureLike existLike = this.getOne(queryWrapper);
-        if (existLike != null) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "已经点赞过了");
-        }
-
-        // 创建点赞记录
-        PictureLike pictureLike = new PictureLike();
-        pictureLike.setPictureId(pictureId);
-        pictureLike.setUserId(userId);
-        boolean saveResult = this.save(pictureLike);
-        if (!saveResult) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "点赞失败");
-        }
-
-        // 更新图片点赞数
-        picture.setLikeCount(picture.getLikeCount() == null ? 1 : picture.getLikeCount() + 1);
-        boolean updateResult = pictureService.updateById(picture);
-        if (!updateResult) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "更新点赞数失败");
-        }
-
-        return true;
+    public List<PictureInteractionResultVO> likePictureByBatch(List<Long> pictureIdList, User loginUser) {
+        return addInteractionByBatch(pictureIdList, loginUser);
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public boolean unlikePicture(long pictureId, User loginUser) {
-        // 判断图片是否存在
-        Picture picture = pictureService.getById(pictureId);
-        ThrowUtils.throwIf(picture == null, ErrorCode.NOT_FOUND_ERROR, "图片不存在");
-
-        // 判断是否已经点赞
-        long userId = loginUser.getId();
-        QueryWrapper<PictureLike> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("pictureId", pictureId);
-        queryWrapper.eq("userId", userId);
-        PictureLike existLike = this.getOne(queryWrapper);
-        if (existLike == null) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "还未点赞");
-        }
-
-        // 删除点赞记录
-        boolean removeResult = this.removeById(existLike.getId());
-        if (!removeResult) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "取消点赞失败");
-        }
-
-        // 更新图片点赞数
-        int newLikeCount = picture.getLikeCount() - 1;
-        if (newLikeCount < 0) {
-            newLikeCount = 0;
-        }
-        picture.setLikeCount(newLikeCount);
-        boolean updateResult = pictureService.updateById(picture);
-        if (!updateResult) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "更新点赞数失败");
-        }
-
-        return true;
+    public List<PictureInteractionResultVO> unlikePictureByBatch(List<Long> pictureIdList, User loginUser) {
+        return removeInteractionByBatch(pictureIdList, loginUser);
     }
 
     @Override
     public Page<PictureVO> listLikedPictureByPage(PictureInteractionQueryRequest pictureInteractionQueryRequest,
                                                   HttpServletRequest request) {
-        long current = pictureInteractionQueryRequest.getCurrent();
-        long size = pictureInteractionQueryRequest.getPageSize();
-        Long userId = pictureInteractionQueryRequest.getUserId();
-
-        ThrowUtils.throwIf(userId == null || userId <= 0, ErrorCode.PARAMS_ERROR, "用户id不能为空");
-
-        // 查询用户点赞的图片id列表
-        QueryWrapper<PictureLike> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("userId", userId);
-        queryWrapper.orderByDesc("createTime");
-        Page<PictureLike> pictureLikePage = this.page(new Page<>(current, size), queryWrapper);
-
-        List<PictureLike> pictureLikeList = pictureLikePage.getRecords();
-        if (pictureLikeList.isEmpty()) {
-            return new Page<>(current, size, 0);
-        }
-
-        // 获取图片id列表
-        List<Long> pictureIdList = pictureLikeList.stream()
-                .map(PictureLike::getPictureId)
-                .collect(Collectors.toList());
-
-        // 查询图片信息
-        List<Picture> pictureList = pictureService.listByIds(pictureIdList);
-        if (pictureList.isEmpty()) {
-            return new Page<>(current, size, 0);
-        }
-
-        // 转换为PictureVO
-        List<PictureVO> pictureVOList = pictureList.stream()
-                .map(picture -> pictureService.getPictureVO(picture, request))
-                .collect(Collectors.toList());
-
-        // 构造分页结果
-        Page<PictureVO> pictureVOPage = new Page<>(current, size, pictureLikePage.getTotal());
-        pictureVOPage.setRecords(pictureVOList);
-
-        return pictureVOPage;
+        return listInteractedPictureByPage(pictureInteractionQueryRequest, request);
+    }
+
+    @Override
+    protected String actionName() {
+        return "点赞";
+    }
+
+    @Override
+    protected InteractionWrite.Type addType() {
+        return InteractionWrite.Type.LIKE;
+    }
+
+    @Override
+    protected InteractionWrite.Type removeType() {
+        return InteractionWrite.Type.UNLIKE;
+    }
+
+    @Override
+    protected PictureLike newRecord(long id, long pictureId, long userId) {
+        PictureLike pictureLike = new PictureLike();
+        pictureLike.setId(id);
+        pictureLike.setPictureId(pictureId);
+        pictureLike.setUserId(userId);
+        return pictureLike;
+    }
+
+    @Override
+    protected Long getId(PictureLike pictureLike) {
+        return pictureLike.getId();
+    }
+
+    @Override
+    protected Long getPictureId(PictureLike pictureLike) {
+        return pictureLike.getPictureId();
     }
-}
 
+    @Override
+    protected Date getCreateTime(PictureLike pictureLike) {
+        return pictureLike.getCreateTime();
+    }
+
+    @Override
+    protected int insertIgnoreBatch(List<PictureLike> pictureLikeList) {
+        return this.baseMapper.insertIgnoreBatch(pictureLikeList);
+    }
+
+    @Override
+    protected void onAdded(long userId, List<Long> pictureIds) {
+        // 更新图片点赞数（在 Redis 中原子加一，由定时任务批量写回数据库）
+        pictureCounterManager.incrementLikeCounts(pictureIds, userId, 1);
+        // 更新用户的点赞集合
+        pictureInteractionManager.updateLiked(userId, pictureIds, true);
+        // 计入热门排行
+        hotPictureManager.recordLike(pictureIds);
+    }
+
+    @Override
+    protected void onRemoved(long userId, Map<Long, Date> likeTimeMap) {
+        // 更新图片点赞数（在 Redis 中原子减一，不会小于 0）
+        pictureCounterManager.incrementLikeCounts(likeTimeMap.keySet(), userId, -1);
+        // 更新用户的点赞集合
+        pictureInteractionManager.updateLiked(userId, likeTimeMap.keySet(), false);
+        // 撤销点赞时计入的热度
+        hotPictureManager.revokeLike(likeTimeMap);
+    }
+}
@@ -7,6 +7,7 @@ import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.ouguofeng.api.aliyunai.AliYunAiApi;
 import com.ouguofeng.api.aliyunai.model.CreateOutPaintingTaskRequest;
 import com.ouguofeng.api.aliyunai.model.CreateOutPaintingTaskResponse;
@@ -16,6 +17,16 @@ import com.ouguofeng.exception.BusinessException;
 import com.ouguofeng.exception.ErrorCode;
 import com.ouguofeng.exception.ThrowUtils;
 import com.ouguofeng.manager.CosManager;
+import com.ouguofeng.manager.cache.CacheMetrics;
+import com.ouguofeng.manager.cache.CacheNamespaces;
+import com.ouguofeng.manager.cache.CachedIdPage;
+import com.ouguofeng.manager.cache.PictureCacheTags;
+import com.ouguofeng.manager.cache.PictureIdBloomFilter;
+import com.ouguofeng.manager.counter.PictureCounterManager;
+import com.ouguofeng.manager.counter.UserFollowCountManager;
+import com.ouguofeng.manager.feed.PictureFeedManager;
+import com.ouguofeng.manager.hot.HotPictureManager;
+import com.ouguofeng.manager.interaction.PictureInteractionManager;
 import com.ouguofeng.manager.upload.FilePictureUpload;
 import com.ouguofeng.manager.upload.PictureUploadTemplate;
 import com.ouguofeng.manager.upload.UrlPictureUpload;
@@ -26,6 +37,7 @@ import com.ouguofeng.model.entity.Picture;
 import com.ouguofeng.model.entity.Space;
 import com.ouguofeng.model.entity.User;
 import com.ouguofeng.model.enums.PictureReviewStatusEnum;
+import com.ouguofeng.model.vo.PictureTagCategory;
 import com.ouguofeng.model.vo.PictureVO;
 import com.ouguofeng.model.vo.UserVO;
 import com.ouguofeng.service.PictureService;
@@ -42,6 +54,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
 
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
@@ -83,14 +96,69 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
     @Resource
     private AliYunAiApi aliYunAiApi;
 
+
     @Resource
-    private com.ouguofeng.mapper.PictureLikeMapper pictureLikeMapper;
+    private com.ouguofeng.service.CacheService cacheService;
 
     @Resource
-    private com.ouguofeng.mapper.PictureFavoriteMapper pictureFavoriteMapper;
+    private PictureIdBloomFilter pictureIdBloomFilter;
 
     @Resource
-    private com.ouguofeng.service.CacheService cacheService;
+    private PictureCounterManager pictureCounterManager;
+
+    @Resource
+    private UserFollowCountManager userFollowCountManager;
+
+    @Resource
+    private PictureFeedManager pictureFeedManager;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    @Resource
+    private PictureInteractionManager pictureInteractionManager;
+
+    @Resource
+    private HotPictureManager hotPictureManager;
+
+    /**
+     * 图片列表缓存值类型（查询结果的 id 列表）
+     */
+    private static final TypeReference<CachedIdPage> CACHED_ID_PAGE_TYPE = new TypeReference<>() {
+    };
+
+    /**
+     * 单张图片封装类的缓存过期时间（秒），与图片详情接口共用同一个缓存
+     */
+    private static final int PICTURE_VO_EXPIRE_SECONDS = 300;
+
+    /**
+     * 预定义的图片标签列表（精简版）
+     * 用于前端展示和AI识别时的参考
+     */
+    private static final List<String> PICTURE_TAGS = Arrays.asList(
+            // 风格类
+            "高清", "创意", "艺术", "简约", "卡通",
+            // 场景类
+            "风景", "自然", "城市", "建筑", "夜景",
+            // 人物类
+            "人物", "美女", "儿童", "情侣",
+            // 生活类
+            "生活", "美食", "旅游", "运动", "宠物",
+            // 情感类
+            "搞笑", "温馨", "浪漫", "治愈",
+            // 主题类
+            "科技", "动物", "植物", "节日",
+            // 用途类
+            "壁纸", "海报", "头像", "背景");
+
+    /**
+     * 预定义的图片分类列表
+     * 用于前端展示和AI识别时的选择
+     */
+    private static final List<String> PICTURE_CATEGORIES = Arrays.asList(
+            "模板", "电商", "表情包", "素材", "海报", "壁纸",
+            "图标", "插画", "背景图");
 
     // 批量上传专用线程池
     private final ExecutorService batchUploadExecutor = Executors.newFixedThreadPool(10);
@@ -127,8 +195,9 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
         }
         // 判断是否传入了id，有则是根据传入的id值更新图片
         // 如果是更新，判断图片是否存在
+        Picture oldPicture = null;
         if (pictureId != null) {
-            Picture oldPicture = this.getById(pictureId);
+            oldPicture = this.getById(pictureId);
             ThrowUtils.throwIf(oldPicture == null, ErrorCode.NOT_FOUND_ERROR, "图片不存在");
             // 仅本人或者管理员可以编辑
             if (!oldPicture.getUserId().equals(loginUser.getId()) && !userService.isAdmin(loginUser)) {
@@ -204,6 +273,8 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
             }
             return picture;
         });
+        // 清除受影响的公共图库列表缓存
+        clearPictureListCache(oldPicture, oldPicture == null ? picture : PictureCacheTags.afterUpdate(oldPicture, picture));
 
         // AI 自动识别图片标签和分类（仅在新增图片时才进行AI识别，异步执行不阻塞保存流程）
         if (pictureId == null && picture.getId() != null) {
@@ -244,28 +315,24 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
             UserVO userVO = userService.getUserVO(user);
             pictureVO.setUser(userVO);
         }
-        // 查询当前登录用户是否已点赞和收藏
+        // 点赞数和收藏数以 Redis 中的实时计数为准
+        pictureCounterManager.fillCounts(Collections.singletonList(pictureVO));
+        // 查询当前登录用户是否已点赞和收藏，request 为 null 时按未登录处理
         User loginUser = null;
-        try {
-            loginUser = userService.getLoginUser(request);
-        } catch (Exception e) {
-            // 未登录用户，忽略
+        if (request != null) {
+            try {
+                loginUser = userService.getLoginUser(request);
+            } catch (Exception e) {
+                // 未登录用户，忽略
+            }
         }
         if (loginUser != null) {
-            Long loginUserId = loginUser.getId();
+            // 从 Redis 中的用户点赞和收藏集合判断
             Long pictureId = picture.getId();
-            // 查询是否已点赞
-            QueryWrapper<com.ouguofeng.model.entity.PictureLike> likeQueryWrapper = new QueryWrapper<>();
-            likeQueryWrapper.eq("pictureId", pictureId);
-            likeQueryWrapper.eq("userId", loginUserId);
-            long likeCount = pictureLikeMapper.selectCount(likeQueryWrapper);
-            pictureVO.setHasLiked(likeCount > 0);
-            // 查询是否已收藏
-            QueryWrapper<com.ouguofeng.model.entity.PictureFavorite> favoriteQueryWrapper = new QueryWrapper<>();
-            favoriteQueryWrapper.eq("pictureId", pictureId);
-            favoriteQueryWrapper.eq("userId", loginUserId);
-            long favoriteCount = pictureFavoriteMapper.selectCount(favoriteQueryWrapper);
-            pictureVO.setHasFavorited(favoriteCount > 0);
+            PictureInteractionManager.PictureInteractions interactions = pictureInteractionManager
+                    .getInteractions(loginUser.getId(), Collections.singletonList(pictureId));
+            pictureVO.setHasLiked(interactions.getLikedPictureIds().contains(pictureId));
+            pictureVO.setHasFavorited(interactions.getFavoritedPictureIds().contains(pictureId));
         } else {
             pictureVO.setHasLiked(false);
             pictureVO.setHasFavorited(false);
@@ -281,8 +348,22 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
         if (CollUtil.isEmpty(pictureList)) {
             return pictureVOPage;
         }
+        List<PictureVO> pictureVOList = getPictureVOListWithUser(pictureList);
+        // 查询当前登录用户是否已点赞和收藏（批量查询优化），request 为 null 时按未登录处理
+        setPictureInteraction(pictureVOList, request);
+        pictureVOPage.setRecords(pictureVOList);
+        return pictureVOPage;
+    }
+
+    /**
+     * 图片列表转封装类列表，并批量填充创建用户信息（不含当前用户的点赞和收藏状态）
+     */
+    private List<PictureVO> getPictureVOListWithUser(List<Picture> pictureList) {
         // 对象列表转vo对象列表
         List<PictureVO> pictureVOList = pictureList.stream().map(PictureVO::objToVo).collect(Collectors.toList());
+        if (pictureVOList.isEmpty()) {
+            return pictureVOList;
+        }
         // 1、关联查询用户信息（优化：使用toMap避免分组后再取第一个元素的开销）
         Set<Long> userIdSet = pictureList.stream().map(Picture::getUserId).collect(Collectors.toSet());
         // 优化：直接使用toMap，避免groupingBy后再get(0)的开销
@@ -298,48 +379,204 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
             UserVO userVO = userIdUserVOMap.get(userId);
             pictureVO.setUser(userVO);
         });
-        // 3、查询当前登录用户是否已点赞和收藏（批量查询优化）
+        return pictureVOList;
+    }
+
+    @Override
+    public List<PictureVO> fillPictureInteraction(List<PictureVO> pictureVOList, HttpServletRequest request) {
+        if (CollUtil.isEmpty(pictureVOList)) {
+            return new ArrayList<>();
+        }
+        // 缓存中的对象被所有请求共享，复制后再填充；作者信息会被填充粉丝数和关注数，也要复制
+        List<PictureVO> result = pictureVOList.stream().map(pictureVO -> {
+            PictureVO copy = new PictureVO();
+            BeanUtils.copyProperties(pictureVO, copy);
+            if (pictureVO.getUser() != null) {
+                UserVO userCopy = new UserVO();
+                BeanUtils.copyProperties(pictureVO.getUser(), userCopy);
+                copy.setUser(userCopy);
+            }
+            return copy;
+        }).collect(Collectors.toList());
+        setPictureInteraction(result, request);
+        return result;
+    }
+
+    @Override
+    public Page<PictureVO> listPublicPictureVOByPageWithCache(PictureQueryRequest pictureQueryRequest) {
+        long current = pictureQueryRequest.getCurrent();
+        long size = pictureQueryRequest.getPageSize();
+        // 普通用户默认只能看到审核通过的数据
+        pictureQueryRequest.setReviewStatus(PictureReviewStatusEnum.PASS.getValue());
+        pictureQueryRequest.setNullSpaceId(true);
+
+        // 查询缓存，缓存中没有，再查询数据库
+        // 构建缓存的 key
+        String queryCondition = JSONUtil.toJsonStr(pictureQueryRequest);
+        String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes());
+        // 键中带公共图库命名空间的版本号，清空公共图库缓存只需要更新版本号
+        String cacheKey = cacheService.versionedKey(CacheNamespaces.PUBLIC_PICTURE,
+                String.format("listPictureIdPage:%s", hashKey));
+        // 查询缓存，未命中时加载（同一节点内相同查询只查一次数据库，节点之间由分布式锁协调）
+        // 300 秒后软过期，返回旧值并在后台刷新；硬过期 600 - 900 秒
+        // 列表缓存只保存 id 列表和总数，图片内容保存在每张图片自己的缓存中，不会在多个列表页中重复保存
+        CachedIdPage idPage = cacheService.getOrLoad(cacheKey, CACHED_ID_PAGE_TYPE, 300, 600, () -> {
+            Page<Picture> picturePage = this.page(new Page<>(current, size),
+                    this.getQueryWrapper(pictureQueryRequest));
+            // 顺便写入每张图片的缓存，随后的批量读取可以直接命中
+            List<PictureVO> pictureVOList = getPictureVOListWithUser(picturePage.getRecords());
+            cachePictureVOList(pictureVOList);
+            CachedIdPage cachedIdPage = new CachedIdPage();
+            cachedIdPage.setIds(pictureVOList.stream().map(PictureVO::getId).collect(Collectors.toList()));
+            cachedIdPage.setTotal(picturePage.getTotal());
+            cachedIdPage.setCurrent(picturePage.getCurrent());
+            cachedIdPage.setSize(picturePage.getSize());
+            return cachedIdPage;
+        }, page -> PictureCacheTags.ofQuery(pictureQueryRequest));
+        // 缓存只保存与用户无关的数据（后台刷新时请求已经结束，也不能使用 request），点赞和收藏状态读取时再填充
+        Page<PictureVO> pictureVOPage = new Page<>(idPage.getCurrent(), idPage.getSize(), idPage.getTotal());
+        pictureVOPage.setRecords(listPictureVOByIdsWithCache(idPage.getIds()));
+        return pictureVOPage;
+    }
+
+    @Override
+    public List<PictureVO> listPictureVOByIds(List<Long> pictureIdList, HttpServletRequest request) {
+        return fillPictureInteraction(listPictureVOByIdsWithCache(pictureIdList), request);
+    }
+
+    @Override
+    public List<PictureVO> listFeedPictureVO(long userId, Long lastPictureId, int size) {
+        // 收件箱和大 V 发件箱只保存 id，图片内容从单张图片的缓存中批量读取，已经删除的图片跳过
+        List<Long> pictureIdList = pictureFeedManager.listFeedPictureIds(userId, lastPictureId, size);
+        return listPictureVOByIdsWithCache(pictureIdList).stream()
+                .filter(pictureVO -> pictureVO.getSpaceId() == null)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Page<PictureVO> listHotPictureVOByPage(long current, long size) {
+        // 排行只保存 id，图片内容从单张图片的缓存中批量读取
+        HotPictureManager.HotPage hotPage = hotPictureManager.getHotPage(current, size);
+        Page<PictureVO> pictureVOPage = new Page<>(current, size, hotPage.getTotal());
+        pictureVOPage.setRecords(listPictureVOByIdsWithCache(hotPage.getIds()));
+        return pictureVOPage;
+    }
+
+    /**
+     * 按 id 批量获取图片封装类，结果保持 id 的顺序，已经不存在的图片跳过
+     * 先批量读取每张图片的缓存（本地缓存未命中的一次 MGET），未命中的再一次性查询数据库并写入缓存
+     */
+    private List<PictureVO> listPictureVOByIdsWithCache(List<Long> ids) {
+        if (CollUtil.isEmpty(ids)) {
+            return new ArrayList<>();
+        }
+        List<String> cacheKeys = ids.stream().map(this::getPictureVOCacheKey).collect(Collectors.toList());
+        Map<String, PictureVO> cachedPictureVOMap = cacheService.multiGet(cacheKeys, PictureVO.class);
+        Map<Long, PictureVO> loadedPictureVOMap = new HashMap<>();
+        List<Long> missIds = ids.stream()
+                .filter(id -> !cachedPictureVOMap.containsKey(getPictureVOCacheKey(id)))
+                .collect(Collectors.toList());
+        if (!missIds.isEmpty()) {
+            // 一次查询加载所有未命中的图片，耗时平均计入每个未命中的键
+            long loadStart = System.nanoTime();
+            List<PictureVO> loadedPictureVOList = getPictureVOListWithUser(this.listByIds(missIds));
+            long nanosPerKey = (System.nanoTime() - loadStart) / missIds.size();
+            missIds.forEach(id -> cacheMetrics.recordLoad(getPictureVOCacheKey(id), nanosPerKey, true));
+            cachePictureVOList(loadedPictureVOList);
+            loadedPictureVOList.forEach(pictureVO -> loadedPictureVOMap.put(pictureVO.getId(), pictureVO));
+        }
+        List<PictureVO> pictureVOList = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            PictureVO pictureVO = cachedPictureVOMap.get(getPictureVOCacheKey(id));
+            if (pictureVO == null) {
+                pictureVO = loadedPictureVOMap.get(id);
+            }
+            if (pictureVO != null) {
+                pictureVOList.add(pictureVO);
+            }
+        }
+        return pictureVOList;
+    }
+
+    /**
+     * 批量写入单张图片的缓存
+     */
+    private void cachePictureVOList(List<PictureVO> pictureVOList) {
+        if (pictureVOList.isEmpty()) {
+            return;
+        }
+        Map<String, PictureVO> pictureVOMap = new LinkedHashMap<>();
+        for (PictureVO pictureVO : pictureVOList) {
+            pictureVOMap.put(getPictureVOCacheKey(pictureVO.getId()), pictureVO);
+        }
+        cacheService.multiSet(pictureVOMap, PICTURE_VO_EXPIRE_SECONDS);
+    }
+
+    /**
+     * 单张图片封装类的缓存键（与图片详情接口相同）
+     */
+    private String getPictureVOCacheKey(Long pictureId) {
+        return String.format("picture:vo:%d", pictureId);
+    }
+
+    @Override
+    public PictureTagCategory getPictureTagCategory() {
+        // 构建缓存键（静态数据，使用固定键）
+        String cacheKey = "picture:tag_category";
+
+        // 1. 先从缓存中查询
+        PictureTagCategory cachedCategory = cacheService.get(cacheKey, PictureTagCategory.class);
+        if (cachedCategory != null) {
+            return cachedCategory;
+        }
+
+        // 2. 缓存未命中，构建数据
+        PictureTagCategory pictureTagCategory = new PictureTagCategory();
+        pictureTagCategory.setTagList(PICTURE_TAGS);
+        pictureTagCategory.setCategoryList(PICTURE_CATEGORIES);
+
+        // 3. 写入缓存（24小时过期，静态数据）
+        cacheService.set(cacheKey, pictureTagCategory, 86400);
+        return pictureTagCategory;
+    }
+
+    /**
+     * 批量判断当前登录用户是否点赞和收藏了这些图片并填充，未登录时全部为 false
+     * 同时用 Redis 中的实时计数覆盖点赞数和收藏数（缓存和数据库中的值可能还没有更新），
+     * 并刷新作者的粉丝数和关注数（缓存的图片封装类中作者信息是写入缓存时的快照）
+     */
+    private void setPictureInteraction(List<PictureVO> pictureVOList, HttpServletRequest request) {
+        pictureCounterManager.fillCounts(pictureVOList);
+        userFollowCountManager.fillCounts(pictureVOList.stream()
+                .map(PictureVO::getUser)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
         User loginUser = null;
-        try {
-            loginUser = userService.getLoginUser(request);
-        } catch (Exception e) {
-            // 未登录用户，忽略
+        if (request != null) {
+            try {
+                loginUser = userService.getLoginUser(request);
+            } catch (Exception e) {
+                // 未登录用户，忽略
+            }
         }
-        if (loginUser != null) {
-            Long loginUserId = loginUser.getId();
-            Set<Long> pictureIdSet = pictureList.stream().map(Picture::getId).collect(Collectors.toSet());
-            // 批量查询当前用户对这些图片的点赞记录
-            QueryWrapper<com.ouguofeng.model.entity.PictureLike> likeQueryWrapper = new QueryWrapper<>();
-            likeQueryWrapper.eq("userId", loginUserId);
-            likeQueryWrapper.in("pictureId", pictureIdSet);
-            List<com.ouguofeng.model.entity.PictureLike> pictureLikeList = pictureLikeMapper
-                    .selectList(likeQueryWrapper);
-            Set<Long> likedPictureIdSet = pictureLikeList.stream()
-                    .map(com.ouguofeng.model.entity.PictureLike::getPictureId)
-                    .collect(Collectors.toSet());
-            // 批量查询当前用户对这些图片的收藏记录
-            QueryWrapper<com.ouguofeng.model.entity.PictureFavorite> favoriteQueryWrapper = new QueryWrapper<>();
-            favoriteQueryWrapper.eq("userId", loginUserId);
-            favoriteQueryWrapper.in("pictureId", pictureIdSet);
-            List<com.ouguofeng.model.entity.PictureFavorite> pictureFavoriteList = pictureFavoriteMapper
-                    .selectList(favoriteQueryWrapper);
-            Set<Long> favoritedPictureIdSet = pictureFavoriteList.stream()
-                    .map(com.ouguofeng.model.entity.PictureFavorite::getPictureId)
-                    .collect(Collectors.toSet());
-            // 填充是否已点赞和收藏
-            pictureVOList.forEach(pictureVO -> {
-                pictureVO.setHasLiked(likedPictureIdSet.contains(pictureVO.getId()));
-                pictureVO.setHasFavorited(favoritedPictureIdSet.contains(pictureVO.getId()));
-            });
-        } else {
-            // 未登录用户，设置为false
+        if (loginUser == null) {
             pictureVOList.forEach(pictureVO -> {
                 pictureVO.setHasLiked(false);
                 pictureVO.setHasFavorited(false);
             });
+            return;
         }
-        pictureVOPage.setRecords(pictureVOList);
-        return pictureVOPage;
+        Set<Long> pictureIdSet = pictureVOList.stream().map(PictureVO::getId).collect(Collectors.toSet());
+        // 从 Redis 中的用户点赞和收藏集合批量判断（一次管道），不查询数据库
+        PictureInteractionManager.PictureInteractions interactions = pictureInteractionManager
+                .getInteractions(loginUser.getId(), pictureIdSet);
+        Set<Long> likedPictureIdSet = interactions.getLikedPictureIds();
+        Set<Long> favoritedPictureIdSet = interactions.getFavoritedPictureIds();
+        // 填充是否已点赞和收藏
+        pictureVOList.forEach(pictureVO -> {
+            pictureVO.setHasLiked(likedPictureIdSet.contains(pictureVO.getId()));
+            pictureVO.setHasFavorited(favoritedPictureIdSet.contains(pictureVO.getId()));
+        });
     }
 
     @Override
@@ -435,6 +672,8 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
         // 操作数据库进行更新
         boolean result = this.updateById(updatePicture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 审核状态改变会影响图片是否出现在公共图库
+        clearPictureListCache(oldPicture, PictureCacheTags.afterUpdate(oldPicture, updatePicture));
     }
 
     @Override
@@ -513,6 +752,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
             }
             return true;
         });
+        clearPictureListCache(oldPicture, null);
         // 异步清理文件
         this.clearPictureFile(oldPicture);
     }
@@ -541,6 +781,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
         // 操作数据库
         boolean result = this.updateById(picture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        clearPictureListCache(oldPicture, PictureCacheTags.afterUpdate(oldPicture, picture));
     }
 
     @Override
@@ -629,6 +870,8 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
         // 5. 操作数据库进行批量更新
         boolean result = this.updateBatchById(pictureList);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "批量编辑失败");
+        // 6. 清除空间列表缓存
+        cacheService.invalidateNamespace(CacheNamespaces.space(spaceId));
     }
 
     @Override
@@ -815,6 +1058,9 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
             }
             return true;
         });
+        for (Picture picture : successPictures) {
+            clearPictureListCache(null, picture);
+        }
 
         // 异步进行AI识别（使用线程池，不阻塞主流程）
         for (Picture picture : successPictures) {
@@ -927,13 +1173,54 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
                 log.info("异步AI识别完成，已更新图片ID: {}", picture.getId());
 
                 // AI识别完成后清除缓存，确保前端能获取到最新的标签信息
-                cacheService.clearPictureCache();
+                clearPictureListCache(picture, PictureCacheTags.afterUpdate(picture, updatePicture));
             }
         } catch (Exception e) {
             log.error("异步AI识别图片标签和分类失败，图片ID: {}", picture.getId(), e);
         }
     }
 
+    /**
+     * 按写操作前后的图片状态，只清除受影响的图片缓存
+     * 单张图片的缓存直接删除，公共图库列表按标签清除，私有空间更新空间版本号；新增图片时同时记录到 id 布隆过滤器
+     * 图片进出公共图库时同步热门排行和关注动态
+     *
+     * @param oldPicture 写之前的图片（新增时为 null）
+     * @param newPicture 写之后的图片（删除时为 null）
+     */
+    private void clearPictureListCache(Picture oldPicture, Picture newPicture) {
+        if (oldPicture == null && newPicture != null && newPicture.getId() != null) {
+            pictureIdBloomFilter.put(newPicture.getId());
+        }
+        if (oldPicture != null) {
+            cacheService.delete(getPictureVOCacheKey(oldPicture.getId()));
+            // 删除或不再公开的图片移出热门排行
+            if (PictureCacheTags.isVisible(oldPicture) && !PictureCacheTags.isVisible(newPicture)) {
+                hotPictureManager.remove(oldPicture.getId());
+            }
+        }
+        // 进入公共图库时推送到粉丝的关注动态，离开时撤回
+        boolean oldVisible = PictureCacheTags.isVisible(oldPicture);
+        boolean newVisible = PictureCacheTags.isVisible(newPicture);
+        if (!oldVisible && newVisible) {
+            pictureFeedManager.publish(newPicture.getId(), newPicture.getUserId());
+        } else if (oldVisible && !newVisible) {
+            pictureFeedManager.retract(oldPicture.getId(), oldPicture.getUserId());
+        }
+        Set<String> tags = PictureCacheTags.ofWrite(oldPicture, newPicture);
+        if (!tags.isEmpty()) {
+            cacheService.invalidateTags(tags);
+        }
+        Long oldSpaceId = oldPicture == null ? null : oldPicture.getSpaceId();
+        Long newSpaceId = newPicture == null ? null : newPicture.getSpaceId();
+        if (oldSpaceId != null) {
+            cacheService.invalidateNamespace(CacheNamespaces.space(oldSpaceId));
+        }
+        if (newSpaceId != null && !newSpaceId.equals(oldSpaceId)) {
+            cacheService.invalidateNamespace(CacheNamespaces.space(newSpaceId));
+        }
+    }
+
     /**
      * 应用关闭时清理线程池
      */
@@ -1009,6 +1296,9 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
             ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "额度更新失败");
             return result;
         });
+
+        // 7. 清除空间列表缓存
+        clearPictureListCache(null, newPicture);
     }
 
     @Override
@@ -1053,6 +1343,6 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture> impl
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "发布失败");
 
         // 6. 清除公共图库缓存
-        cacheService.clearPictureCache();
+        clearPictureListCache(null, newPicture);
     }
 }
@@ -6,6 +6,9 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.ouguofeng.exception.BusinessException;
 import com.ouguofeng.exception.ErrorCode;
 import com.ouguofeng.exception.ThrowUtils;
+import com.ouguofeng.manager.feed.PictureFeedManager;
+import com.ouguofeng.manager.interaction.InteractionWrite;
+import com.ouguofeng.manager.interaction.InteractionWritePipeline;
 import com.ouguofeng.mapper.UserFollowMapper;
 import com.ouguofeng.model.dto.user.UserFollowQueryRequest;
 import com.ouguofeng.model.entity.User;
@@ -15,7 +18,6 @@ import com.ouguofeng.service.UserFollowService;
 import com.ouguofeng.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -35,8 +37,13 @@ public class UserFollowServiceImpl extends ServiceImpl<UserFollowMapper, UserFol
     @Resource
     private UserService userService;
 
+    @Resource
+    private InteractionWritePipeline interactionWritePipeline;
+
+    @Resource
+    private PictureFeedManager pictureFeedManager;
+
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public boolean followUser(long followeeId, User loginUser) {
         // 判断被关注者是否存在
         User followee = userService.getById(followeeId);
@@ -46,50 +53,32 @@ public class UserFollowServiceImpl extends ServiceImpl<UserFollowMapper, UserFol
         long followerId = loginUser.getId();
         ThrowUtils.throwIf(followerId == followeeId, ErrorCode.OPERATION_ERROR, "不能关注自己");
 
-        // 判断是否已经关注
-        QueryWrapper<UserFollow> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("followerId", followerId);
-        queryWrapper.eq("followeeId", followeeId);
-        UserFollow existFollow = this.getOne(queryWrapper);
-        if (existFollow != null) {
+        // 交给组提交管道：与其他请求的关注合并为一条多行插入，已经关注过时由唯一索引忽略
+        // 关注动态中还没有这个作者的图片，生效时在写入事务中注册提交之后删除收件箱，下次读取时重建
+        boolean followed = interactionWritePipeline.write(InteractionWrite.Type.FOLLOW, followeeId, followerId,
+                write -> pictureFeedManager.evict(followerId));
+        if (!followed) {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "已经关注过了");
         }
 
-        // 创建关注记录
-        UserFollow userFollow = new UserFollow();
-        userFollow.setFollowerId(followerId);
-        userFollow.setFolloweeId(followeeId);
-        boolean saveResult = this.save(userFollow);
-        if (!saveResult) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "关注失败");
-        }
-
         return true;
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public boolean unfollowUser(long followeeId, User loginUser) {
         // 判断被关注者是否存在
         User followee = userService.getById(followeeId);
         ThrowUtils.throwIf(followee == null, ErrorCode.NOT_FOUND_ERROR, "用户不存在");
 
-        // 判断是否已经关注
+        // 交给组提交管道：与其他请求的取消关注合并为一次批量删除，根据结果判断是否关注过
         long followerId = loginUser.getId();
-        QueryWrapper<UserFollow> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("followerId", followerId);
-        queryWrapper.eq("followeeId", followeeId);
-        UserFollow existFollow = this.getOne(queryWrapper);
-        if (existFollow == null) {
+        // 关注动态中还有这个作者的图片，生效时在写入事务中注册提交之后删除收件箱，下次读取时重建
+        boolean removed = interactionWritePipeline.write(InteractionWrite.Type.UNFOLLOW, followeeId, followerId,
+                write -> pictureFeedManager.evict(followerId));
+        if (!removed) {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "还未关注");
         }
 
-        // 删除关注记录
-        boolean removeResult = this.removeById(existFollow.getId());
-        if (!removeResult) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "取消关注失败");
-        }
-
         return true;
     }
 
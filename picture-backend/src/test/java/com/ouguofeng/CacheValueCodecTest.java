@@ -0,0 +1,94 @@
+package com.ouguofeng;
+
+import cn.hutool.core.util.StrUtil;
+import com.ouguofeng.manager.cache.CacheValueCodec;
+import com.ouguofeng.model.vo.PictureVO;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 缓存值编码测试
+ */
+public class CacheValueCodecTest {
+
+    private final CacheValueCodec cacheValueCodec = new CacheValueCodec();
+
+    @Test
+    public void testSmallValueRoundTripWithoutCompression() {
+        PictureVO pictureVO = buildPictureVO(1L, "风景");
+        byte[] bytes = cacheValueCodec.encode(pictureVO, 123456789L);
+
+        // 小值不压缩，未压缩长度就是编码长度
+        Assertions.assertFalse(cacheValueCodec.isCompressed(bytes));
+        Assertions.assertEquals(bytes.length, cacheValueCodec.uncompressedLength(bytes));
+        Assertions.assertEquals(123456789L, cacheValueCodec.readSoftExpireAt(bytes));
+
+        PictureVO decoded = cacheValueCodec.decode(bytes, cacheValueCodec.constructType(PictureVO.class));
+        Assertions.assertEquals(pictureVO.getId(), decoded.getId());
+        Assertions.assertEquals(pictureVO.getName(), decoded.getName());
+        Assertions.assertEquals(pictureVO.getTags(), decoded.getTags());
+    }
+
+    @Test
+    public void testLargeValueRoundTripWithCompression() {
+        // 一页图片，重复的字段名和取值压缩效果明显
+        List<PictureVO> pictureVOList = new ArrayList<>();
+        for (long i = 1; i <= 50; i++) {
+            pictureVOList.add(buildPictureVO(i, StrUtil.repeat("风景", 20)));
+        }
+        byte[] bytes = cacheValueCodec.encode(pictureVOList, 42L);
+
+        Assertions.assertTrue(cacheValueCodec.isCompressed(bytes));
+        Assertions.assertTrue(cacheValueCodec.uncompressedLength(bytes) > bytes.length);
+        Assertions.assertTrue(cacheValueCodec.uncompressedLength(bytes) >= 2048);
+        Assertions.assertEquals(42L, cacheValueCodec.readSoftExpireAt(bytes));
+
+        PictureVO[] decoded = cacheValueCodec.decode(bytes, cacheValueCodec.constructType(PictureVO[].class));
+        Assertions.assertEquals(50, decoded.length);
+        for (int i = 0; i < decoded.length; i++) {
+            Assertions.assertEquals(pictureVOList.get(i).getId(), decoded[i].getId());
+            Assertions.assertEquals(pictureVOList.get(i).getName(), decoded[i].getName());
+        }
+    }
+
+    @Test
+    public void testRandomValueNotCompressedWhenNotSmaller() {
+        // 无法压缩的数据超过阈值也按未压缩格式存储
+        StringBuilder stringBuilder = new StringBuilder();
+        Random random = new Random(1);
+        while (stringBuilder.length() < 4096) {
+            stringBuilder.append(Long.toString(random.nextLong(), 36));
+        }
+        String value = stringBuilder.toString();
+        byte[] bytes = cacheValueCodec.encode(value, 0L);
+
+        Assertions.assertFalse(cacheValueCodec.isCompressed(bytes));
+        String decoded = cacheValueCodec.decode(bytes, cacheValueCodec.constructType(String.class));
+        Assertions.assertEquals(value, decoded);
+    }
+
+    @Test
+    public void testUnknownFormatRejected() {
+        byte[] bytes = cacheValueCodec.encode("value", 0L);
+        bytes[0] = 99;
+        Assertions.assertThrows(IllegalStateException.class, () -> cacheValueCodec.readSoftExpireAt(bytes));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> cacheValueCodec.decode(bytes, cacheValueCodec.constructType(String.class)));
+    }
+
+    private PictureVO buildPictureVO(long id, String name) {
+        PictureVO pictureVO = new PictureVO();
+        pictureVO.setId(id);
+        pictureVO.setName(name);
+        pictureVO.setUrl("https://test.com/picture/" + id + ".jpg");
+        List<String> tags = new ArrayList<>();
+        tags.add("旅行");
+        tags.add("海边");
+        pictureVO.setTags(tags);
+        return pictureVO;
+    }
+}
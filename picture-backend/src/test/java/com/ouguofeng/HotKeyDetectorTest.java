@@ -0,0 +1,56 @@
+package com.ouguofeng;
+
+import com.ouguofeng.manager.cache.HotKeyDetector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 热点键识别测试
+ */
+public class HotKeyDetectorTest {
+
+    /**
+     * 采样窗口（与 HotKeyDetector 一致）
+     */
+    private static final int SAMPLE_SIZE = 10 * (1 << 14);
+
+    @Test
+    public void testFrequencyAndThresholds() {
+        HotKeyDetector hotKeyDetector = new HotKeyDetector();
+        Assertions.assertEquals(0, hotKeyDetector.frequency("picture:1"));
+        Assertions.assertTrue(hotKeyDetector.isCold(hotKeyDetector.record("picture:1")));
+
+        int frequency = 0;
+        for (int i = 1; i < 16; i++) {
+            frequency = hotKeyDetector.record("picture:1");
+        }
+        Assertions.assertEquals(16, frequency);
+        Assertions.assertEquals(16, hotKeyDetector.frequency("picture:1"));
+        Assertions.assertTrue(hotKeyDetector.isHot(frequency));
+        Assertions.assertFalse(hotKeyDetector.isHot(15));
+        // 其他键不受影响
+        Assertions.assertTrue(hotKeyDetector.isCold(hotKeyDetector.frequency("picture:2")));
+    }
+
+    @Test
+    public void testCountsHalvedAfterSampleWindow() {
+        HotKeyDetector hotKeyDetector = new HotKeyDetector();
+        for (int i = 0; i < 40; i++) {
+            hotKeyDetector.record("picture:hot");
+        }
+        // 其余访问都落在另一个键上，累计达到采样窗口时所有计数减半
+        for (int i = 40; i < SAMPLE_SIZE - 1; i++) {
+            hotKeyDetector.record("picture:other");
+        }
+        Assertions.assertEquals(40, hotKeyDetector.frequency("picture:hot"));
+        hotKeyDetector.record("picture:other");
+        Assertions.assertEquals(20, hotKeyDetector.frequency("picture:hot"));
+        Assertions.assertEquals(SAMPLE_SIZE - 40, hotKeyDetector.frequency("picture:other") * 2);
+
+        // 减半后继续累加
+        for (int i = 0; i < 5; i++) {
+            hotKeyDetector.record("picture:hot");
+        }
+        Assertions.assertEquals(25, hotKeyDetector.frequency("picture:hot"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.ouguofeng;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.ouguofeng.manager.hot.HotPictureManager;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.model.entity.Picture;
+import com.ouguofeng.service.CacheService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+
+/**
+ * 热门排行热度计算测试
+ */
+public class HotPictureManagerTest {
+
+    private static final long HALF_LIFE_SECONDS = 3600L;
+
+    private HotPictureManager hotPictureManager;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        PictureMapper pictureMapper = Mockito.mock(PictureMapper.class);
+        // 图片 1、2 是公共图片，按查询条件中的图片 id 返回
+        Mockito.when(pictureMapper.selectObjs(any())).thenAnswer(invocation -> {
+            QueryWrapper<Picture> queryWrapper = invocation.getArgument(0);
+            // 生成 SQL 片段时才绑定参数
+            queryWrapper.getSqlSegment();
+            return queryWrapper.getParamNameValuePairs().values().stream()
+                    .filter(value -> value instanceof Long && ((Long) value == 1L || (Long) value == 2L))
+                    .collect(Collectors.toList());
+        });
+
+        hotPictureManager = new HotPictureManager();
+        ReflectionTestUtils.setField(hotPictureManager, "halfLifeSeconds", HALF_LIFE_SECONDS);
+        ReflectionTestUtils.setField(hotPictureManager, "maxSize", 10000);
+        ReflectionTestUtils.setField(hotPictureManager, "viewDedupSeconds", 600L);
+        ReflectionTestUtils.setField(hotPictureManager, "viewWeight", 1D);
+        ReflectionTestUtils.setField(hotPictureManager, "likeWeight", 3D);
+        ReflectionTestUtils.setField(hotPictureManager, "favoriteWeight", 5D);
+        ReflectionTestUtils.setField(hotPictureManager, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(hotPictureManager, "pictureMapper", pictureMapper);
+        ReflectionTestUtils.setField(hotPictureManager, "cacheService", Mockito.mock(CacheService.class));
+        hotPictureManager.init();
+    }
+
+    @Test
+    public void testDecayFactor() {
+        long now = System.currentTimeMillis();
+        Assertions.assertEquals(1D, decayFactor(null, now));
+        Assertions.assertEquals(1D, decayFactor(new Date(now + 1000L), now));
+        Assertions.assertEquals(1D, decayFactor(new Date(now), now), 1e-9);
+        Assertions.assertEquals(0.5D, decayFactor(new Date(now - HALF_LIFE_SECONDS * 1000L), now), 1e-9);
+        Assertions.assertEquals(0.25D, decayFactor(new Date(now - 2 * HALF_LIFE_SECONDS * 1000L), now), 1e-9);
+    }
+
+    @Test
+    public void testRevokeSubtractsOriginalContribution() {
+        // 一个半衰期之前的点赞现在只相当于当时权重的一半，撤销时减去的也是一半
+        Date likeTime = new Date(System.currentTimeMillis() - HALF_LIFE_SECONDS * 1000L);
+        hotPictureManager.recordLike(Collections.singletonList(1L));
+        hotPictureManager.revokeLike(Collections.singletonMap(1L, likeTime));
+        // 刚收藏又取消收藏，完全抵消
+        hotPictureManager.recordFavorite(Collections.singletonList(2L));
+        hotPictureManager.revokeFavorite(Collections.singletonMap(2L, new Date()));
+
+        Map<Long, Double> scores = flushScores();
+        Assertions.assertEquals(1.5D, scores.get(1L), 1e-3);
+        Assertions.assertEquals(0D, scores.getOrDefault(2L, 0D), 1e-3);
+    }
+
+    @Test
+    public void testRepeatedViewsCountedOnce() {
+        hotPictureManager.recordView(1L, "u1");
+        hotPictureManager.recordView(1L, "u1");
+        hotPictureManager.recordView(1L, "u2");
+        hotPictureManager.recordView(2L, "u1");
+
+        Map<Long, Double> scores = flushScores();
+        Assertions.assertEquals(2D, scores.get(1L));
+        Assertions.assertEquals(1D, scores.get(2L));
+    }
+
+    @Test
+    public void testNothingWrittenWithoutEvents() {
+        hotPictureManager.flush();
+        Mockito.verify(stringRedisTemplate, Mockito.never()).execute(any(RedisScript.class), anyList(), any());
+    }
+
+    private double decayFactor(Date eventTime, long now) {
+        Double factor = ReflectionTestUtils.invokeMethod(hotPictureManager, "decayFactor", eventTime, now);
+        Assertions.assertNotNull(factor);
+        return factor;
+    }
+
+    /**
+     * 写入 Redis 并取出脚本参数中的图片分数（前两个参数是当前时间和半衰期）
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, Double> flushScores() {
+        hotPictureManager.flush();
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(stringRedisTemplate).execute(any(RedisScript.class), anyList(), captor.capture());
+        List<Object> args = captor.getAllValues();
+        Assertions.assertEquals(String.valueOf(HALF_LIFE_SECONDS), args.get(1));
+        Map<Long, Double> scores = new HashMap<>();
+        for (int i = 2; i < args.size(); i += 2) {
+            scores.put(Long.parseLong((String) args.get(i)), Double.parseDouble((String) args.get(i + 1)));
+        }
+        return scores;
+    }
+}
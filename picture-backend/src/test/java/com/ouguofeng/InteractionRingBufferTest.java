@@ -0,0 +1,93 @@
+package com.ouguofeng;
+
+import com.ouguofeng.manager.interaction.InteractionRingBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 互动写入环形队列测试
+ */
+public class InteractionRingBufferTest {
+
+    @Test
+    public void testFifoAndCapacity() {
+        // 容量向上取整为 2 的幂
+        InteractionRingBuffer<Integer> ringBuffer = new InteractionRingBuffer<>(3);
+        Assertions.assertTrue(ringBuffer.isEmpty());
+        Assertions.assertNull(ringBuffer.poll());
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(ringBuffer.offer(i));
+        }
+        // 队列已满时立即返回 false
+        Assertions.assertFalse(ringBuffer.offer(4));
+
+        Assertions.assertEquals(0, ringBuffer.poll());
+        Assertions.assertTrue(ringBuffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            Assertions.assertEquals(i, ringBuffer.poll());
+        }
+        Assertions.assertTrue(ringBuffer.isEmpty());
+        Assertions.assertNull(ringBuffer.poll());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        int producerCount = 8;
+        int perProducer = 20_000;
+        InteractionRingBuffer<Integer> ringBuffer = new InteractionRingBuffer<>(64);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            int base = p * perProducer;
+            Thread producer = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    // 队列满时重试
+                    while (!ringBuffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        startLatch.countDown();
+
+        // 单个消费者：每个元素恰好取出一次，同一生产者的元素保持写入顺序
+        BitSet seen = new BitSet(producerCount * perProducer);
+        int[] lastSeen = new int[producerCount];
+        Arrays.fill(lastSeen, -1);
+        int total = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (total < producerCount * perProducer) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "消费超时，已取出 " + total);
+            Integer element = ringBuffer.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            Assertions.assertFalse(seen.get(element), "重复取出 " + element);
+            seen.set(element);
+            int producer = element / perProducer;
+            Assertions.assertTrue(element % perProducer > lastSeen[producer], "顺序错误 " + element);
+            lastSeen[producer] = element % perProducer;
+            total++;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        Assertions.assertTrue(ringBuffer.isEmpty());
+        Assertions.assertEquals(producerCount * perProducer, seen.cardinality());
+    }
+}
@@ -0,0 +1,168 @@
+package com.ouguofeng;
+
+import com.ouguofeng.manager.counter.UserFollowCountManager;
+import com.ouguofeng.manager.interaction.InteractionWrite;
+import com.ouguofeng.manager.interaction.InteractionWritePipeline;
+import com.ouguofeng.mapper.PictureFavoriteMapper;
+import com.ouguofeng.mapper.PictureLikeMapper;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.mapper.UserFollowMapper;
+import com.ouguofeng.mapper.UserMapper;
+import com.ouguofeng.model.entity.PictureLike;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+
+/**
+ * 互动写入组提交管道测试（不启动写入线程，直接执行合并后的批次）
+ */
+public class InteractionWritePipelineTest {
+
+    private InteractionWritePipeline interactionWritePipeline;
+
+    private TransactionTemplate transactionTemplate;
+
+    private PictureMapper pictureMapper;
+
+    private UserMapper userMapper;
+
+    private PictureLikeMapper pictureLikeMapper;
+
+    private UserFollowMapper userFollowMapper;
+
+    private UserFollowCountManager userFollowCountManager;
+
+    /**
+     * 按回调顺序记录生效的写入
+     */
+    private final List<InteractionWrite> appliedWrites = new ArrayList<>();
+
+    private final Consumer<InteractionWrite> onApplied = appliedWrites::add;
+
+    @BeforeEach
+    public void setUp() {
+        transactionTemplate = Mockito.mock(TransactionTemplate.class);
+        pictureMapper = Mockito.mock(PictureMapper.class);
+        userMapper = Mockito.mock(UserMapper.class);
+        pictureLikeMapper = Mockito.mock(PictureLikeMapper.class);
+        userFollowMapper = Mockito.mock(UserFollowMapper.class);
+        userFollowCountManager = Mockito.mock(UserFollowCountManager.class);
+
+        // 事务直接执行回调
+        Mockito.when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        // 图片 1 和用户 20 存在
+        Mockito.when(pictureMapper.selectObjs(any())).thenReturn(Collections.<Object>singletonList(1L));
+        Mockito.when(userMapper.selectObjs(any())).thenReturn(Collections.<Object>singletonList(20L));
+        Mockito.when(pictureLikeMapper.insertIgnoreBatch(anyList()))
+                .thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        Mockito.when(userFollowMapper.insertIgnoreBatch(anyList()))
+                .thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+
+        interactionWritePipeline = new InteractionWritePipeline();
+        ReflectionTestUtils.setField(interactionWritePipeline, "enabled", false);
+        ReflectionTestUtils.setField(interactionWritePipeline, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(interactionWritePipeline, "pictureMapper", pictureMapper);
+        ReflectionTestUtils.setField(interactionWritePipeline, "userMapper", userMapper);
+        ReflectionTestUtils.setField(interactionWritePipeline, "pictureLikeMapper", pictureLikeMapper);
+        ReflectionTestUtils.setField(interactionWritePipeline, "pictureFavoriteMapper",
+                Mockito.mock(PictureFavoriteMapper.class));
+        ReflectionTestUtils.setField(interactionWritePipeline, "userFollowMapper", userFollowMapper);
+        ReflectionTestUtils.setField(interactionWritePipeline, "userFollowCountManager", userFollowCountManager);
+        interactionWritePipeline.init();
+    }
+
+    @Test
+    public void testWriteCallsOnAppliedOnlyWhenApplied() {
+        Assertions.assertTrue(interactionWritePipeline.write(InteractionWrite.Type.LIKE, 1L, 10L, onApplied));
+        Assertions.assertEquals(1, appliedWrites.size());
+        Assertions.assertEquals(1L, appliedWrites.get(0).getTargetId());
+        Assertions.assertEquals(10L, appliedWrites.get(0).getUserId());
+
+        // 图片不存在时不写入，也不回调
+        Assertions.assertFalse(interactionWritePipeline.write(InteractionWrite.Type.LIKE, 2L, 10L, onApplied));
+        Assertions.assertEquals(1, appliedWrites.size());
+    }
+
+    @Test
+    public void testConflictingWritesSplitIntoOrderedGroups() {
+        InteractionWrite like = new InteractionWrite(InteractionWrite.Type.LIKE, 1L, 10L, onApplied);
+        InteractionWrite otherLike = new InteractionWrite(InteractionWrite.Type.LIKE, 1L, 11L, onApplied);
+        InteractionWrite unlike = new InteractionWrite(InteractionWrite.Type.UNLIKE, 1L, 10L, onApplied);
+        InteractionWrite follow = new InteractionWrite(InteractionWrite.Type.FOLLOW, 1L, 10L, onApplied);
+
+        List<List<InteractionWrite>> groups = ReflectionTestUtils.invokeMethod(interactionWritePipeline,
+                "splitConflicts", Arrays.asList(like, otherLike, unlike, follow));
+        // 同一对图片和用户的点赞、取消点赞落在不同分组；关注是另一张表，不冲突
+        Assertions.assertNotNull(groups);
+        Assertions.assertEquals(2, groups.size());
+        Assertions.assertEquals(Arrays.asList(like, otherLike), groups.get(0));
+        Assertions.assertEquals(Arrays.asList(unlike, follow), groups.get(1));
+    }
+
+    @Test
+    public void testBatchAppliedInOrderInOneTransaction() {
+        Date likeTime = new Date(System.currentTimeMillis() - 60_000L);
+        Mockito.when(pictureLikeMapper.selectList(any())).thenAnswer(invocation -> {
+            PictureLike pictureLike = new PictureLike();
+            pictureLike.setId(100L);
+            pictureLike.setPictureId(1L);
+            pictureLike.setUserId(10L);
+            pictureLike.setCreateTime(likeTime);
+            return Collections.singletonList(pictureLike);
+        });
+        InteractionWrite like = new InteractionWrite(InteractionWrite.Type.LIKE, 1L, 10L, onApplied);
+        InteractionWrite otherLike = new InteractionWrite(InteractionWrite.Type.LIKE, 1L, 11L, onApplied);
+        InteractionWrite unlike = new InteractionWrite(InteractionWrite.Type.UNLIKE, 1L, 10L, onApplied);
+        InteractionWrite follow = new InteractionWrite(InteractionWrite.Type.FOLLOW, 20L, 10L, onApplied);
+        List<InteractionWrite> batch = Arrays.asList(like, otherLike, unlike, follow);
+
+        ReflectionTestUtils.invokeMethod(interactionWritePipeline, "execute", batch);
+
+        // 一个事务，点赞的多行插入先于取消点赞的删除
+        Mockito.verify(transactionTemplate, Mockito.times(1)).execute(any());
+        InOrder inOrder = Mockito.inOrder(pictureLikeMapper);
+        inOrder.verify(pictureLikeMapper).insertIgnoreBatch(Mockito.argThat(rows -> rows.size() == 2));
+        inOrder.verify(pictureLikeMapper).selectList(any());
+        inOrder.verify(pictureLikeMapper).deleteByIds(Collections.singletonList(100L));
+        // 关注在同一事务中更新双方的计数
+        Mockito.verify(userFollowCountManager).addCounts(Collections.singletonMap(20L, 1),
+                Collections.singletonMap(10L, 1));
+
+        // 按写入顺序回调，删除生效的写入带上被删除记录的创建时间
+        Assertions.assertEquals(batch, appliedWrites);
+        Assertions.assertEquals(likeTime, unlike.getRemovedCreateTime());
+        for (InteractionWrite write : batch) {
+            Assertions.assertTrue(write.getFuture().join());
+        }
+    }
+
+    @Test
+    public void testFailedBatchRetriedOneByOne() {
+        Mockito.when(userFollowMapper.insertIgnoreBatch(anyList())).thenThrow(new IllegalStateException("写入失败"));
+        InteractionWrite like = new InteractionWrite(InteractionWrite.Type.LIKE, 1L, 10L, onApplied);
+        InteractionWrite follow = new InteractionWrite(InteractionWrite.Type.FOLLOW, 20L, 10L, onApplied);
+
+        ReflectionTestUtils.invokeMethod(interactionWritePipeline, "execute", Arrays.asList(like, follow));
+
+        // 整批回滚后逐个重试：点赞单独提交，关注失败，失败的写入不回调
+        Assertions.assertTrue(like.getFuture().join());
+        Assertions.assertTrue(follow.getFuture().isCompletedExceptionally());
+        Assertions.assertEquals(Collections.singletonList(like), appliedWrites);
+    }
+}
@@ -0,0 +1,71 @@
+package com.ouguofeng;
+
+import com.ouguofeng.manager.cache.PictureCacheTags;
+import com.ouguofeng.model.dto.picture.PictureQueryRequest;
+import com.ouguofeng.model.entity.Picture;
+import com.ouguofeng.model.enums.PictureReviewStatusEnum;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 图片列表缓存依赖标签测试
+ */
+public class PictureCacheTagsTest {
+
+    @Test
+    public void testUserAndCategoryQueryInvalidatedWhenCategoryChanges() {
+        // 同时按用户和分类过滤的查询
+        PictureQueryRequest pictureQueryRequest = new PictureQueryRequest();
+        pictureQueryRequest.setUserId(1L);
+        pictureQueryRequest.setCategory("风景");
+
+        // 该用户把图片从“风景”改到“人物”，用户没有变化
+        Picture oldPicture = buildPicture(1L, "风景", "[\"旅行\"]");
+        Picture newPicture = PictureCacheTags.afterUpdate(oldPicture, buildPicture(1L, "人物", "[\"旅行\"]"));
+
+        assertInvalidated(pictureQueryRequest, oldPicture, newPicture);
+    }
+
+    @Test
+    public void testMultiTagQueryInvalidatedWhenTagAdded() {
+        // 同时按两个标签过滤的查询
+        PictureQueryRequest pictureQueryRequest = new PictureQueryRequest();
+        pictureQueryRequest.setTags(Arrays.asList("旅行", "海边"));
+
+        // 带“旅行”标签的图片新增“海边”标签
+        Picture oldPicture = buildPicture(2L, null, "[\"旅行\"]");
+        Picture newPicture = PictureCacheTags.afterUpdate(oldPicture, buildPicture(2L, null, "[\"旅行\",\"海边\"]"));
+
+        assertInvalidated(pictureQueryRequest, oldPicture, newPicture);
+    }
+
+    @Test
+    public void testPrivatePictureWriteInvalidatesNothing() {
+        Picture oldPicture = buildPicture(3L, "风景", null);
+        oldPicture.setSpaceId(100L);
+        Picture newPicture = PictureCacheTags.afterUpdate(oldPicture, buildPicture(3L, "人物", null));
+
+        Assertions.assertTrue(PictureCacheTags.ofWrite(oldPicture, newPicture).isEmpty());
+    }
+
+    private void assertInvalidated(PictureQueryRequest pictureQueryRequest, Picture oldPicture, Picture newPicture) {
+        Set<String> queryTags = new HashSet<>(PictureCacheTags.ofQuery(pictureQueryRequest));
+        queryTags.retainAll(PictureCacheTags.ofWrite(oldPicture, newPicture));
+        Assertions.assertFalse(queryTags.isEmpty(), "写操作没有清除该查询的缓存");
+    }
+
+    private Picture buildPicture(Long userId, String category, String tags) {
+        Picture picture = new Picture();
+        picture.setId(1000L);
+        picture.setUserId(userId);
+        picture.setCategory(category);
+        picture.setTags(tags);
+        picture.setReviewStatus(PictureReviewStatusEnum.PASS.getValue());
+        picture.setIsDelete(0);
+        return picture;
+    }
+}
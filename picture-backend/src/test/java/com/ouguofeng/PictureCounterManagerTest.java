@@ -0,0 +1,116 @@
+package com.ouguofeng;
+
+import com.ouguofeng.manager.counter.PictureCounterManager;
+import com.ouguofeng.manager.counter.PictureCounterStripeManager;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.model.entity.Picture;
+import com.ouguofeng.service.CacheService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 图片计数写回测试
+ */
+public class PictureCounterManagerTest {
+
+    private static final String DIRTY_KEY = "picture:counter:dirty";
+
+    private static final String FLUSH_LOCK_KEY = "picture:counter:flush";
+
+    private PictureCounterManager pictureCounterManager;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private SetOperations<String, String> setOperations;
+
+    private PictureMapper pictureMapper;
+
+    private CacheService cacheService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        setOperations = Mockito.mock(SetOperations.class);
+        pictureMapper = Mockito.mock(PictureMapper.class);
+        cacheService = Mockito.mock(CacheService.class);
+        PictureCounterStripeManager pictureCounterStripeManager = Mockito.mock(PictureCounterStripeManager.class);
+        Mockito.when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        Mockito.when(cacheService.tryLock(eq(FLUSH_LOCK_KEY), anyLong())).thenReturn("token");
+
+        pictureCounterManager = new PictureCounterManager();
+        ReflectionTestUtils.setField(pictureCounterManager, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(pictureCounterManager, "pictureMapper", pictureMapper);
+        ReflectionTestUtils.setField(pictureCounterManager, "cacheService", cacheService);
+        ReflectionTestUtils.setField(pictureCounterManager, "pictureCounterStripeManager",
+                pictureCounterStripeManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlushWritesCurrentCounts() {
+        Mockito.when(setOperations.pop(DIRTY_KEY, 500))
+                .thenReturn(Arrays.asList("1", "2", "3"), Collections.emptyList());
+        // 图片 2 的计数器已经过期
+        Mockito.when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(
+                Arrays.asList("5", "1"), Arrays.asList(null, null), Arrays.asList("0", "7")));
+
+        pictureCounterManager.flush();
+
+        ArgumentCaptor<List<Picture>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(pictureMapper).batchUpdateCounts(captor.capture());
+        List<Picture> pictureList = captor.getValue();
+        Assertions.assertEquals(2, pictureList.size());
+        Assertions.assertEquals(1L, pictureList.get(0).getId());
+        Assertions.assertEquals(5, pictureList.get(0).getLikeCount());
+        Assertions.assertEquals(1, pictureList.get(0).getFavoriteCount());
+        Assertions.assertEquals(3L, pictureList.get(1).getId());
+        Assertions.assertEquals(0, pictureList.get(1).getLikeCount());
+        Assertions.assertEquals(7, pictureList.get(1).getFavoriteCount());
+        Mockito.verify(setOperations, Mockito.never()).add(anyString(), any(String[].class));
+        Mockito.verify(cacheService).releaseLock(FLUSH_LOCK_KEY, "token");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedFlushMarksDirtyAgain() {
+        Mockito.when(setOperations.pop(DIRTY_KEY, 500)).thenReturn(Arrays.asList("1", "2"));
+        Mockito.when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(
+                Arrays.asList("5", "1"), Arrays.asList("2", "0")));
+        Mockito.when(pictureMapper.batchUpdateCounts(Mockito.anyList()))
+                .thenThrow(new IllegalStateException("数据库不可用"));
+
+        pictureCounterManager.flush();
+
+        // 取出的全部图片重新标记，下一轮再写回，失败后本轮停止
+        Mockito.verify(setOperations).add(DIRTY_KEY, "1", "2");
+        Mockito.verify(setOperations, Mockito.times(1)).pop(DIRTY_KEY, 500);
+        Mockito.verify(cacheService).releaseLock(FLUSH_LOCK_KEY, "token");
+    }
+
+    @Test
+    public void testFlushSkippedWithoutLock() {
+        Mockito.when(cacheService.tryLock(eq(FLUSH_LOCK_KEY), anyLong())).thenReturn(null);
+
+        pictureCounterManager.flush();
+
+        Mockito.verify(setOperations, Mockito.never()).pop(anyString(), anyLong());
+        Mockito.verify(cacheService, Mockito.never()).releaseLock(anyString(), any());
+    }
+}
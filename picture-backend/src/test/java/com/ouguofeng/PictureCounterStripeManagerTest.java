@@ -0,0 +1,127 @@
+package com.ouguofeng;
+
+import com.ouguofeng.manager.counter.PictureCounterStripeManager;
+import com.ouguofeng.mapper.PictureCounterStripeMapper;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.model.entity.Picture;
+import com.ouguofeng.model.entity.PictureCounterStripe;
+import com.ouguofeng.service.CacheService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+/**
+ * 图片计数分片测试
+ */
+public class PictureCounterStripeManagerTest {
+
+    private PictureCounterStripeManager pictureCounterStripeManager;
+
+    private PictureCounterStripeMapper pictureCounterStripeMapper;
+
+    private PictureMapper pictureMapper;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        pictureCounterStripeMapper = Mockito.mock(PictureCounterStripeMapper.class);
+        pictureMapper = Mockito.mock(PictureMapper.class);
+        TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+        // 事务直接执行回调
+        Mockito.doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        pictureCounterStripeManager = new PictureCounterStripeManager();
+        ReflectionTestUtils.setField(pictureCounterStripeManager, "enabled", true);
+        ReflectionTestUtils.setField(pictureCounterStripeManager, "stripeCount", 16);
+        ReflectionTestUtils.setField(pictureCounterStripeManager, "pictureCounterStripeMapper",
+                pictureCounterStripeMapper);
+        ReflectionTestUtils.setField(pictureCounterStripeManager, "pictureMapper", pictureMapper);
+        ReflectionTestUtils.setField(pictureCounterStripeManager, "cacheService", Mockito.mock(CacheService.class));
+        ReflectionTestUtils.setField(pictureCounterStripeManager, "transactionTemplate", transactionTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIncrementWritesOneStripePerPictureInIdOrder() {
+        pictureCounterStripeManager.increment(Arrays.asList(3L, 1L, 3L, 2L), 10L, 1, 0);
+
+        ArgumentCaptor<List<PictureCounterStripe>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(pictureCounterStripeMapper).batchIncrement(captor.capture());
+        List<PictureCounterStripe> stripeList = captor.getValue();
+        Assertions.assertEquals(3, stripeList.size());
+        for (int i = 0; i < stripeList.size(); i++) {
+            PictureCounterStripe pictureCounterStripe = stripeList.get(i);
+            Assertions.assertEquals(i + 1L, pictureCounterStripe.getPictureId());
+            Assertions.assertEquals(1, pictureCounterStripe.getLikeCount());
+            Assertions.assertEquals(0, pictureCounterStripe.getFavoriteCount());
+            // 同一用户落在同一个分片
+            Assertions.assertEquals(stripeList.get(0).getStripe(), pictureCounterStripe.getStripe());
+            Assertions.assertTrue(pictureCounterStripe.getStripe() >= 0 && pictureCounterStripe.getStripe() < 16);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFoldAllSumsStripesAndDeletesThem() {
+        Mockito.when(pictureCounterStripeMapper.selectPictureIds(anyInt()))
+                .thenReturn(Arrays.asList(1L, 2L), Collections.emptyList());
+        Mockito.when(pictureCounterStripeMapper.selectByPictureIdsForUpdate(Arrays.asList(1L, 2L)))
+                .thenReturn(Arrays.asList(
+                        buildStripe(1L, 0, 3, 1),
+                        buildStripe(1L, 5, -1, 2),
+                        buildStripe(2L, 7, 0, -1)));
+
+        pictureCounterStripeManager.foldAll();
+
+        ArgumentCaptor<List<Picture>> captor = ArgumentCaptor.forClass(List.class);
+        InOrder inOrder = Mockito.inOrder(pictureMapper, pictureCounterStripeMapper);
+        inOrder.verify(pictureMapper).batchAddCounts(captor.capture());
+        inOrder.verify(pictureCounterStripeMapper).deleteByPictureIds(Arrays.asList(1L, 2L));
+        List<Picture> pictureList = captor.getValue();
+        Assertions.assertEquals(2, pictureList.size());
+        Assertions.assertEquals(1L, pictureList.get(0).getId());
+        Assertions.assertEquals(2, pictureList.get(0).getLikeCount());
+        Assertions.assertEquals(3, pictureList.get(0).getFavoriteCount());
+        Assertions.assertEquals(2L, pictureList.get(1).getId());
+        Assertions.assertEquals(0, pictureList.get(1).getLikeCount());
+        Assertions.assertEquals(-1, pictureList.get(1).getFavoriteCount());
+    }
+
+    @Test
+    public void testFoldSkipsBatchAlreadyFoldedByOtherNode() {
+        Mockito.when(pictureCounterStripeMapper.selectPictureIds(anyInt()))
+                .thenReturn(Collections.singletonList(1L), Collections.emptyList());
+        Mockito.when(pictureCounterStripeMapper.selectByPictureIdsForUpdate(any()))
+                .thenReturn(Collections.emptyList());
+
+        pictureCounterStripeManager.foldAll();
+
+        Mockito.verify(pictureMapper, Mockito.never()).batchAddCounts(any());
+        Mockito.verify(pictureCounterStripeMapper, Mockito.never()).deleteByPictureIds(any());
+    }
+
+    private PictureCounterStripe buildStripe(long pictureId, int stripe, int likeCount, int favoriteCount) {
+        PictureCounterStripe pictureCounterStripe = new PictureCounterStripe();
+        pictureCounterStripe.setPictureId(pictureId);
+        pictureCounterStripe.setStripe(stripe);
+        pictureCounterStripe.setLikeCount(likeCount);
+        pictureCounterStripe.setFavoriteCount(favoriteCount);
+        return pictureCounterStripe;
+    }
+}
@@ -0,0 +1,124 @@
+package com.ouguofeng;
+
+import com.ouguofeng.manager.feed.PictureFeedManager;
+import com.ouguofeng.mapper.PictureMapper;
+import com.ouguofeng.mapper.UserFollowMapper;
+import com.ouguofeng.mapper.UserMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 关注动态合并与分页测试
+ */
+public class PictureFeedManagerTest {
+
+    private PictureFeedManager pictureFeedManager;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ValueOperations<String, String> valueOperations;
+
+    private PictureMapper pictureMapper;
+
+    private UserFollowMapper userFollowMapper;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        valueOperations = Mockito.mock(ValueOperations.class);
+        pictureMapper = Mockito.mock(PictureMapper.class);
+        userFollowMapper = Mockito.mock(UserFollowMapper.class);
+        Mockito.when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        pictureFeedManager = new PictureFeedManager();
+        ReflectionTestUtils.setField(pictureFeedManager, "maxSize", 500);
+        ReflectionTestUtils.setField(pictureFeedManager, "inboxExpireSeconds", 604800L);
+        ReflectionTestUtils.setField(pictureFeedManager, "followingBigExpireSeconds", 600L);
+        ReflectionTestUtils.setField(pictureFeedManager, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(pictureFeedManager, "pictureMapper", pictureMapper);
+        ReflectionTestUtils.setField(pictureFeedManager, "userMapper", Mockito.mock(UserMapper.class));
+        ReflectionTestUtils.setField(pictureFeedManager, "userFollowMapper", userFollowMapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMergeInboxAndBigAuthorOutboxes() {
+        // 收件箱（含占位元素）、关注的大 V 5 和 6 的发件箱，图片 40 同时出现在收件箱和发件箱中
+        Mockito.when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(
+                Arrays.asList(Arrays.asList("50", "40", "10", "0"), "5,6", true),
+                Arrays.asList(Arrays.asList("45", "40"), Arrays.asList("30", "20")));
+
+        List<Long> pictureIds = pictureFeedManager.listFeedPictureIds(1L, null, 10);
+
+        // 去重后按图片 id 倒序，去掉占位元素
+        Assertions.assertEquals(Arrays.asList(50L, 45L, 40L, 30L, 20L, 10L), pictureIds);
+        Mockito.verify(pictureMapper, Mockito.never()).selectFeedPictureIds(anyLong(), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPageAfterLastPictureId() {
+        Mockito.when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation ->
+                Arrays.asList(Arrays.asList("50", "40", "30", "20", "10", "0"), "", true));
+
+        Assertions.assertEquals(Arrays.asList(50L, 40L),
+                pictureFeedManager.listFeedPictureIds(1L, null, 2));
+        Assertions.assertEquals(Arrays.asList(30L, 20L),
+                pictureFeedManager.listFeedPictureIds(1L, 40L, 2));
+        Assertions.assertEquals(Collections.singletonList(10L),
+                pictureFeedManager.listFeedPictureIds(1L, 20L, 2));
+        // 上一页的最后一张图片被撤回后仍然可以继续翻页
+        Assertions.assertEquals(Collections.singletonList(10L),
+                pictureFeedManager.listFeedPictureIds(1L, 15L, 2));
+        Assertions.assertEquals(Collections.emptyList(),
+                pictureFeedManager.listFeedPictureIds(1L, 10L, 2));
+        // 没有关注大 V 时只读取一次管道
+        Mockito.verify(stringRedisTemplate, Mockito.times(5)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMissingInboxRebuiltFromDatabase() {
+        // 收件箱不存在，关注的大 V 列表也没有缓存
+        Mockito.when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(
+                Arrays.asList(Collections.emptyList(), null, false),
+                Collections.emptyList());
+        Mockito.when(pictureMapper.selectFeedPictureIds(1L, 500)).thenReturn(Arrays.asList(30L, 20L));
+
+        List<Long> pictureIds = pictureFeedManager.listFeedPictureIds(1L, null, 10);
+
+        Assertions.assertEquals(Arrays.asList(30L, 20L), pictureIds);
+        // 没有大 V 时缓存空的关注列表，不查询关注表
+        Mockito.verify(valueOperations).set(eq("feed:following:big:1"), eq(""), eq(600L), any());
+        Mockito.verify(userFollowMapper, Mockito.never()).selectObjs(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEmptyFeedKeepsPlaceholderOnly() {
+        Mockito.when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(
+                Arrays.asList(Collections.singletonList("0"), "", true));
+
+        Assertions.assertTrue(pictureFeedManager.listFeedPictureIds(1L, null, 10).isEmpty());
+        // 只有占位元素说明收件箱存在，不需要从数据库重建
+        Mockito.verify(pictureMapper, Mockito.never()).selectFeedPictureIds(anyLong(), anyInt());
+        Mockito.verify(valueOperations, Mockito.never()).set(anyString(), anyString(), anyLong(), any());
+    }
+}
@@ -0,0 +1,105 @@
+package com.ouguofeng;
+
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.ouguofeng.manager.cache.PictureIdBloomFilter;
+import com.ouguofeng.mapper.PictureMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * 图片 id 布隆过滤器测试
+ */
+public class PictureIdBloomFilterTest {
+
+    private PictureIdBloomFilter pictureIdBloomFilter;
+
+    private PictureMapper pictureMapper;
+
+    @BeforeEach
+    public void setUp() {
+        pictureMapper = Mockito.mock(PictureMapper.class);
+        pictureIdBloomFilter = new PictureIdBloomFilter();
+        ReflectionTestUtils.setField(pictureIdBloomFilter, "pictureMapper", pictureMapper);
+    }
+
+    @Test
+    public void testAllIdsPassBeforeFirstRebuild() {
+        Assertions.assertTrue(pictureIdBloomFilter.mightContain(1L));
+        Assertions.assertTrue(pictureIdBloomFilter.mightContain(IdWorker.getId()));
+    }
+
+    @Test
+    public void testRebuildContainsExistingIds() {
+        List<Long> existingIds = buildIds(100, 1000);
+        mockPictureIds(existingIds);
+        pictureIdBloomFilter.rebuild();
+
+        for (Long id : existingIds) {
+            Assertions.assertTrue(pictureIdBloomFilter.mightContain(id));
+        }
+        // 不存在的旧 id 绝大多数被拒绝（误判率 1%）
+        int falsePositives = 0;
+        for (long id = 10_001; id <= 11_000; id++) {
+            if (pictureIdBloomFilter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        Assertions.assertTrue(falsePositives < 50, "误判过多: " + falsePositives);
+    }
+
+    @Test
+    public void testRecentIdsPassThroughAfterRebuild() {
+        mockPictureIds(buildIds(100, 10));
+        pictureIdBloomFilter.rebuild();
+
+        // 重建前一段时间之后生成的 id 可能属于还没提交的事务，没有被扫描到也放行
+        Assertions.assertTrue(pictureIdBloomFilter.mightContain(IdWorker.getId()));
+    }
+
+    @Test
+    public void testPutAfterRebuild() {
+        mockPictureIds(buildIds(100, 10));
+        pictureIdBloomFilter.rebuild();
+
+        Assertions.assertFalse(pictureIdBloomFilter.mightContain(5L));
+        pictureIdBloomFilter.put(5L);
+        Assertions.assertTrue(pictureIdBloomFilter.mightContain(5L));
+    }
+
+    @Test
+    public void testFailedRebuildKeepsPreviousFilter() {
+        mockPictureIds(buildIds(100, 10));
+        pictureIdBloomFilter.rebuild();
+
+        Mockito.when(pictureMapper.selectCount(any())).thenThrow(new IllegalStateException("数据库不可用"));
+        pictureIdBloomFilter.rebuild();
+        Assertions.assertTrue(pictureIdBloomFilter.mightContain(100L));
+        Assertions.assertFalse(pictureIdBloomFilter.mightContain(5L));
+    }
+
+    /**
+     * 用较小的 id 模拟已经存在的旧图片（早于放行窗口）
+     */
+    private List<Long> buildIds(long firstId, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(firstId + i * 7L);
+        }
+        return ids;
+    }
+
+    private void mockPictureIds(List<Long> ids) {
+        Mockito.when(pictureMapper.selectCount(any())).thenReturn((long) ids.size());
+        // 数量小于一批，一次读完
+        Mockito.when(pictureMapper.selectObjs(any())).thenReturn(new ArrayList<Object>(ids), Collections.emptyList());
+    }
+}
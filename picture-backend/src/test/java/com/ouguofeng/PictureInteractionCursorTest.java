@@ -0,0 +1,189 @@
+package com.ouguofeng;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.ouguofeng.common.CursorPage;
+import com.ouguofeng.exception.BusinessException;
+import com.ouguofeng.mapper.PictureLikeMapper;
+import com.ouguofeng.model.dto.picture.PictureInteractionQueryRequest;
+import com.ouguofeng.model.entity.PictureLike;
+import com.ouguofeng.model.vo.PictureVO;
+import com.ouguofeng.service.PictureService;
+import com.ouguofeng.service.impl.PictureLikeServiceImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+
+/**
+ * 点赞、收藏列表游标分页测试
+ */
+public class PictureInteractionCursorTest {
+
+    private PictureLikeServiceImpl pictureLikeService;
+
+    private PictureLikeMapper pictureLikeMapper;
+
+    /**
+     * 用户的点赞记录，按创建时间和 id 倒序
+     */
+    private final List<PictureLike> pictureLikeList = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        pictureLikeMapper = Mockito.mock(PictureLikeMapper.class);
+        PictureService pictureService = Mockito.mock(PictureService.class);
+        Mockito.when(pictureService.listPictureVOByIds(anyList(), any())).thenAnswer(invocation ->
+                invocation.<List<Long>>getArgument(0).stream().map(pictureId -> {
+                    PictureVO pictureVO = new PictureVO();
+                    pictureVO.setId(pictureId);
+                    return pictureVO;
+                }).collect(Collectors.toList()));
+        // 模拟数据库分页：第一页按页码查询并统计总数，之后按游标条件过滤；
+        // 条件参数依次为用户 id、上一条记录的创建时间（两次）和 id
+        Mockito.when(pictureLikeMapper.selectPage(any(), any())).thenAnswer(invocation -> {
+            Page<PictureLike> page = invocation.getArgument(0);
+            QueryWrapper<PictureLike> queryWrapper = invocation.getArgument(1);
+            // 生成 SQL 片段时才绑定参数
+            queryWrapper.getSqlSegment();
+            List<Object> params = queryWrapper.getParamNameValuePairs().entrySet().stream()
+                    .sorted(Comparator.comparingInt(entry -> Integer.parseInt(entry.getKey().replaceAll("\\D", ""))))
+                    .map(Map.Entry::getValue)
+                    .collect(Collectors.toList());
+            List<PictureLike> records = pictureLikeList.stream()
+                    .filter(pictureLike -> params.size() == 1 || isAfter(pictureLike, params))
+                    .skip(page.offset())
+                    .limit(page.getSize())
+                    .collect(Collectors.toList());
+            page.setRecords(records);
+            if (page.searchCount()) {
+                page.setTotal(pictureLikeList.size());
+            }
+            return page;
+        });
+
+        pictureLikeService = new PictureLikeServiceImpl();
+        ReflectionTestUtils.setField(pictureLikeService, "baseMapper", pictureLikeMapper);
+        ReflectionTestUtils.setField(pictureLikeService, "pictureService", pictureService);
+    }
+
+    @Test
+    public void testCursorRoundTrip() {
+        Date createTime = new Date(1700000000123L);
+        String cursor = CursorPage.toCursor(createTime, 42L);
+        Assertions.assertArrayEquals(new long[]{1700000000123L, 42L}, CursorPage.parseCursor(cursor));
+
+        Assertions.assertNull(CursorPage.parseCursor(""));
+        Assertions.assertNull(CursorPage.parseCursor("abc"));
+        Assertions.assertNull(CursorPage.parseCursor("1_2_3"));
+        Assertions.assertNull(CursorPage.parseCursor("x_2"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCursorPagesUntilNoMore() {
+        // 5 条记录，其中两条创建时间相同，按 id 区分先后
+        addLike(5L, 105L, 5000L);
+        addLike(4L, 104L, 4000L);
+        addLike(3L, 103L, 4000L);
+        addLike(2L, 102L, 2000L);
+        addLike(1L, 101L, 1000L);
+
+        CursorPage<PictureVO> firstPage = listPage(null);
+        Assertions.assertEquals(Arrays.asList(105L, 104L), pictureIds(firstPage));
+        Assertions.assertTrue(firstPage.isHasMore());
+        Assertions.assertEquals(CursorPage.toCursor(new Date(4000L), 4L), firstPage.getNextCursor());
+
+        CursorPage<PictureVO> secondPage = listPage(firstPage.getNextCursor());
+        Assertions.assertEquals(Arrays.asList(103L, 102L), pictureIds(secondPage));
+        Assertions.assertTrue(secondPage.isHasMore());
+
+        CursorPage<PictureVO> lastPage = listPage(secondPage.getNextCursor());
+        Assertions.assertEquals(Collections.singletonList(101L), pictureIds(lastPage));
+        Assertions.assertFalse(lastPage.isHasMore());
+        Assertions.assertNull(lastPage.getNextCursor());
+
+        // 第一页之后按游标查询，多查一条判断是否还有下一页，不统计总数
+        ArgumentCaptor<Page<PictureLike>> captor = ArgumentCaptor.forClass(Page.class);
+        Mockito.verify(pictureLikeMapper, Mockito.times(3)).selectPage(captor.capture(), any());
+        for (Page<PictureLike> page : captor.getAllValues().subList(1, 3)) {
+            Assertions.assertEquals(3, page.getSize());
+            Assertions.assertFalse(page.searchCount());
+        }
+    }
+
+    @Test
+    public void testCursorStillValidAfterLastRecordDeleted() {
+        addLike(3L, 103L, 3000L);
+        addLike(2L, 102L, 2000L);
+        addLike(1L, 101L, 1000L);
+
+        CursorPage<PictureVO> firstPage = listPage(null);
+        Assertions.assertEquals(Arrays.asList(103L, 102L), pictureIds(firstPage));
+
+        // 上一页的最后一条记录被取消点赞，游标中的排序值仍然可以定位下一页
+        pictureLikeList.removeIf(pictureLike -> pictureLike.getId() == 2L);
+        CursorPage<PictureVO> secondPage = listPage(firstPage.getNextCursor());
+        Assertions.assertEquals(Collections.singletonList(101L), pictureIds(secondPage));
+        Assertions.assertFalse(secondPage.isHasMore());
+    }
+
+    @Test
+    public void testInvalidCursorRejected() {
+        Assertions.assertThrows(BusinessException.class, () -> listPage("invalid"));
+    }
+
+    @Test
+    public void testEmptyPage() {
+        CursorPage<PictureVO> page = listPage(CursorPage.toCursor(new Date(), 1L));
+        Assertions.assertTrue(page.getRecords().isEmpty());
+        Assertions.assertFalse(page.isHasMore());
+        Assertions.assertNull(page.getNextCursor());
+    }
+
+    private CursorPage<PictureVO> listPage(String cursor) {
+        PictureInteractionQueryRequest pictureInteractionQueryRequest = new PictureInteractionQueryRequest();
+        pictureInteractionQueryRequest.setUserId(1L);
+        pictureInteractionQueryRequest.setPageSize(2);
+        pictureInteractionQueryRequest.setCursor(cursor);
+        return (CursorPage<PictureVO>) pictureLikeService.listLikedPictureByPage(pictureInteractionQueryRequest, null);
+    }
+
+    private void addLike(long id, long pictureId, long createTime) {
+        PictureLike pictureLike = new PictureLike();
+        pictureLike.setId(id);
+        pictureLike.setPictureId(pictureId);
+        pictureLike.setUserId(1L);
+        pictureLike.setCreateTime(new Date(createTime));
+        pictureLikeList.add(pictureLike);
+    }
+
+    /**
+     * createTime < lastCreateTime or (createTime = lastCreateTime and id < lastId)
+     */
+    private boolean isAfter(PictureLike pictureLike, List<Object> params) {
+        Date lastCreateTime = (Date) params.get(1);
+        long lastId = (Long) params.get(3);
+        int compare = pictureLike.getCreateTime().compareTo(lastCreateTime);
+        return compare < 0 || (compare == 0 && pictureLike.getId() < lastId);
+    }
+
+    private List<Long> pictureIds(CursorPage<PictureVO> page) {
+        return page.getRecords().stream().map(PictureVO::getId).collect(Collectors.toList());
+    }
+}